@@ -0,0 +1,559 @@
+package com.vityazev_egor.Build;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Generates typed CDP bindings from the vendored protocol schema ({@code browser_protocol.json}, {@code js_protocol.json}).
+ * <p>
+ * For every domain one class is written, e.g. {@code Page}, that contains:
+ * <ul>
+ *     <li>a record for every object type with a streaming {@code read(JsonParser)} and a {@code write(JsonGenerator)} method;</li>
+ *     <li>a factory method and a command class for every command, required parameters go to the factory method,
+ *     optional ones are set with fluent setters;</li>
+ *     <li>a result record for every command that returns something;</li>
+ *     <li>a record for every event with its {@code CDPEventType} in the {@code EVENT} constant.</li>
+ * </ul>
+ * Primitive aliases ({@code Page.FrameId}, {@code Runtime.Timestamp}) are inlined as {@code String}, {@code Integer}, {@code Double} or {@code Boolean},
+ * string enums are kept as {@code String} and free-form objects are read into {@code JsonNode}.
+ * <p>
+ * Runs as a single-file program in the {@code generate-sources} phase, see {@code pom.xml}:
+ * <pre>java -cp &lt;jackson&gt; ProtocolGenerator.java &lt;schema dir&gt; &lt;output dir&gt; &lt;package&gt;</pre>
+ * Files are only rewritten when their content changed, so the compiler does not rebuild untouched domains.
+ */
+public class ProtocolGenerator {
+    private static final Set<String> JAVA_KEYWORDS = Set.of(
+        "abstract", "assert", "boolean", "break", "byte", "case", "catch", "char", "class", "const", "continue",
+        "default", "do", "double", "else", "enum", "extends", "final", "finally", "float", "for", "goto", "if",
+        "implements", "import", "instanceof", "int", "interface", "long", "native", "new", "package", "private",
+        "protected", "public", "return", "short", "static", "strictfp", "super", "switch", "synchronized", "this",
+        "throw", "throws", "transient", "try", "void", "volatile", "while", "true", "false", "null", "record"
+    );
+    // имена, которые уже заняты в сгенерированном коде
+    private static final Set<String> RESERVED_NAMES = Set.of("parser", "generator", "field", "EVENT", "read", "write");
+
+    private final Map<String, JsonNode> types = new HashMap<>();
+    private final List<JsonNode> domains = new ArrayList<>();
+    private final List<String> sources = new ArrayList<>();
+    private final String packageName;
+    private String version = "";
+
+    private ProtocolGenerator(String packageName) {
+        this.packageName = packageName;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("Usage: ProtocolGenerator <schema dir> <output dir> <package>");
+            System.exit(2);
+        }
+        Path schemaDir = Path.of(args[0]);
+        Path outputDir = Path.of(args[1]).resolve(args[2].replace('.', '/'));
+
+        ProtocolGenerator generator = new ProtocolGenerator(args[2]);
+        try (Stream<Path> files = Files.list(schemaDir)) {
+            for (Path schema : files.filter(file -> file.toString().endsWith(".json")).sorted().toList()) {
+                generator.load(schema);
+            }
+        }
+        int changed = generator.writeAll(outputDir);
+        System.out.printf("CDP protocol %s: %d domains, %d files changed%n", generator.version, generator.domains.size(), changed);
+    }
+
+    private void load(Path schema) throws IOException {
+        JsonNode root = new ObjectMapper().readTree(schema.toFile());
+        version = root.path("version").path("major").asText() + "." + root.path("version").path("minor").asText();
+        sources.add(schema.getFileName().toString());
+        for (JsonNode domain : root.path("domains")) {
+            domains.add(domain);
+            for (JsonNode type : domain.path("types")) {
+                types.put(domain.get("domain").asText() + "." + type.get("id").asText(), type);
+            }
+        }
+    }
+
+    private int writeAll(Path outputDir) throws IOException {
+        Files.createDirectories(outputDir);
+        Set<Path> generated = new HashSet<>();
+        int changed = 0;
+        for (JsonNode domain : domains) {
+            Path file = outputDir.resolve(domain.get("domain").asText() + ".java");
+            generated.add(file);
+            String source = generateDomain(domain);
+            if (!Files.exists(file) || !Files.readString(file, StandardCharsets.UTF_8).equals(source)) {
+                Files.writeString(file, source, StandardCharsets.UTF_8);
+                changed++;
+            }
+        }
+        // домены, которых больше нет в схеме
+        try (Stream<Path> files = Files.list(outputDir)) {
+            for (Path stale : files.filter(file -> !generated.contains(file)).toList()) {
+                Files.delete(stale);
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    // ---------------------------------------------------------------- types
+
+    private enum Kind { STRING, INTEGER, NUMBER, BOOLEAN, ANY, LIST, OBJECT }
+
+    /**
+     * Java view of a protocol type.
+     *
+     * @param kind    How the value is read and written
+     * @param name    Java class of {@code OBJECT} values, qualified with the domain if it's declared in another one
+     * @param element Type of {@code LIST} elements
+     */
+    private record JavaType(Kind kind, String name, JavaType element) {
+        String declaration() {
+            return switch (kind) {
+                case STRING -> "String";
+                case INTEGER -> "Integer";
+                case NUMBER -> "Double";
+                case BOOLEAN -> "Boolean";
+                case ANY -> "JsonNode";
+                case LIST -> "List<" + element.declaration() + ">";
+                case OBJECT -> name;
+            };
+        }
+
+        String readExpression(String parser) {
+            return switch (kind) {
+                case STRING -> "ProtocolCodec.readString(" + parser + ")";
+                case INTEGER -> "ProtocolCodec.readInteger(" + parser + ")";
+                case NUMBER -> "ProtocolCodec.readDouble(" + parser + ")";
+                case BOOLEAN -> "ProtocolCodec.readBoolean(" + parser + ")";
+                case ANY -> "ProtocolCodec.readAny(" + parser + ")";
+                case LIST -> "ProtocolCodec.readList(" + parser + ", " + element.decoder() + ")";
+                case OBJECT -> name + ".read(" + parser + ")";
+            };
+        }
+
+        String decoder() {
+            return switch (kind) {
+                case STRING -> "ProtocolCodec::readString";
+                case INTEGER -> "ProtocolCodec::readInteger";
+                case NUMBER -> "ProtocolCodec::readDouble";
+                case BOOLEAN -> "ProtocolCodec::readBoolean";
+                case ANY -> "ProtocolCodec::readAny";
+                case LIST -> "p -> " + readExpression("p");
+                case OBJECT -> name + "::read";
+            };
+        }
+
+        String writeStatement(String generator, String value) {
+            return switch (kind) {
+                case STRING -> generator + ".writeString(" + value + ");";
+                case INTEGER, NUMBER -> generator + ".writeNumber(" + value + ");";
+                case BOOLEAN -> generator + ".writeBoolean(" + value + ");";
+                case ANY -> "ProtocolCodec.writeAny(" + generator + ", " + value + ");";
+                case LIST -> "ProtocolCodec.writeList(" + generator + ", " + value + ", (g, item) -> " + element.writeStatement("g", "item").replaceAll(";$", "") + ");";
+                case OBJECT -> value + ".write(" + generator + ");";
+            };
+        }
+    }
+
+    /**
+     * A parameter, return value or object property.
+     */
+    private record Field(String jsonName, String javaName, JavaType type, boolean optional, boolean deprecated, String description) {
+    }
+
+    private JavaType resolve(String domain, JsonNode schema) {
+        if (schema.has("$ref")) {
+            String ref = schema.get("$ref").asText();
+            String qualified = ref.contains(".") ? ref : domain + "." + ref;
+            JsonNode target = types.get(qualified);
+            if (target == null) {
+                System.err.println("Unknown type " + qualified + ", mapped to JsonNode");
+                return new JavaType(Kind.ANY, null, null);
+            }
+            String targetDomain = qualified.substring(0, qualified.indexOf('.'));
+            if (target.path("type").asText().equals("object") && target.has("properties")) {
+                String name = targetDomain.equals(domain) ? target.get("id").asText() : qualified;
+                return new JavaType(Kind.OBJECT, name, null);
+            }
+            return resolve(targetDomain, target);
+        }
+        return switch (schema.path("type").asText()) {
+            case "string" -> new JavaType(Kind.STRING, null, null);
+            case "integer" -> new JavaType(Kind.INTEGER, null, null);
+            case "number" -> new JavaType(Kind.NUMBER, null, null);
+            case "boolean" -> new JavaType(Kind.BOOLEAN, null, null);
+            case "array" -> new JavaType(Kind.LIST, null, resolve(domain, schema.get("items")));
+            default -> new JavaType(Kind.ANY, null, null);
+        };
+    }
+
+    private List<Field> fields(String domain, JsonNode properties) {
+        List<Field> result = new ArrayList<>();
+        for (JsonNode property : properties) {
+            String jsonName = property.get("name").asText();
+            String javaName = JAVA_KEYWORDS.contains(jsonName) || RESERVED_NAMES.contains(jsonName) ? jsonName + "Value" : jsonName;
+            StringBuilder description = new StringBuilder(doc(property.path("description").asText("")));
+            if (property.has("enum")) {
+                if (!description.isEmpty()) description.append(' ');
+                description.append("Allowed values: ").append(doc(String.join(", ", valuesOf(property.get("enum"))))).append('.');
+            } else if (property.has("$ref")) {
+                JsonNode target = types.get(property.get("$ref").asText().contains(".") ? property.get("$ref").asText() : domain + "." + property.get("$ref").asText());
+                if (target != null && target.has("enum")) {
+                    if (!description.isEmpty()) description.append(' ');
+                    description.append("Allowed values: ").append(doc(String.join(", ", valuesOf(target.get("enum"))))).append('.');
+                }
+            }
+            result.add(new Field(jsonName, javaName, resolve(domain, property),
+                property.path("optional").asBoolean(false), property.path("deprecated").asBoolean(false), description.toString()));
+        }
+        return result;
+    }
+
+    private static List<String> valuesOf(JsonNode array) {
+        List<String> values = new ArrayList<>();
+        array.forEach(value -> values.add(value.asText()));
+        return values;
+    }
+
+    // ---------------------------------------------------------------- source
+
+    private String generateDomain(JsonNode domain) {
+        String name = domain.get("domain").asText();
+        Set<String> nestedNames = new HashSet<>();
+        Source out = new Source();
+
+        out.line("// Generated by ProtocolGenerator from " + String.join(", ", sources) + " (protocol " + version + "). Do not edit.");
+        out.line("package " + packageName + ";");
+        out.line();
+        out.line("import java.io.IOException;");
+        out.line("import java.util.List;");
+        out.line("import java.util.Objects;");
+        out.line();
+        out.line("import com.fasterxml.jackson.core.JsonGenerator;");
+        out.line("import com.fasterxml.jackson.core.JsonParser;");
+        out.line("import com.fasterxml.jackson.core.JsonToken;");
+        out.line("import com.fasterxml.jackson.databind.JsonNode;");
+        out.line("import com.vityazev_egor.Core.CDPCommand;");
+        out.line("import com.vityazev_egor.Core.CDPEventType;");
+        out.line("import com.vityazev_egor.Core.ProtocolCodec;");
+        out.line();
+        out.javadoc(orDefault(doc(domain.path("description").asText("")), name + " domain."), List.of(), domain.path("deprecated").asBoolean(false));
+        out.line("public final class " + name + " {");
+        out.indent();
+        out.line("private " + name + "() {");
+        out.line("}");
+
+        for (JsonNode type : domain.path("types")) {
+            if (!type.path("type").asText().equals("object") || !type.has("properties")) continue;
+            String typeName = type.get("id").asText();
+            claim(nestedNames, name, typeName);
+            out.line();
+            writeRecord(out, typeName, fields(name, type.get("properties")), doc(type.path("description").asText("")),
+                type.path("deprecated").asBoolean(false), null, true);
+        }
+
+        for (JsonNode command : domain.path("commands")) {
+            writeCommand(out, name, command, nestedNames);
+        }
+
+        for (JsonNode event : domain.path("events")) {
+            String eventName = capitalize(event.get("name").asText());
+            claim(nestedNames, name, eventName);
+            out.line();
+            writeRecord(out, eventName, fields(name, event.path("parameters")), doc(event.path("description").asText("")),
+                event.path("deprecated").asBoolean(false), name + "." + event.get("name").asText(), false);
+        }
+
+        out.outdent();
+        out.line("}");
+        return out.toString();
+    }
+
+    private void writeRecord(Source out, String recordName, List<Field> fields, String description, boolean deprecated,
+                             String eventMethod, boolean writable) {
+        List<String> params = new ArrayList<>();
+        for (Field field : fields) {
+            params.add("@param " + field.javaName() + " " + orDefault(field.description(), field.jsonName())
+                + (field.deprecated() ? " Deprecated in the protocol." : ""));
+        }
+        out.javadoc(orDefault(description, recordName + "."), params, deprecated);
+        if (deprecated) out.line("@Deprecated");
+        List<String> components = new ArrayList<>();
+        for (Field field : fields) {
+            components.add(field.type().declaration() + " " + field.javaName());
+        }
+        out.line("public record " + recordName + "(" + String.join(", ", components) + ") {");
+        out.indent();
+
+        if (eventMethod != null) {
+            out.line("public static final CDPEventType<" + recordName + "> EVENT = new CDPEventType<>(\"" + eventMethod + "\", " + recordName + "::read);");
+            out.line();
+        }
+
+        // @Deprecated на компоненте записи не действует, поэтому помечаются явные методы доступа
+        for (Field field : fields) {
+            if (!field.deprecated()) continue;
+            out.javadoc(orDefault(field.description(), field.jsonName()), List.of("@return value of " + field.jsonName()), true);
+            out.line("@Deprecated");
+            out.line("public " + field.type().declaration() + " " + field.javaName() + "() {");
+            out.indent();
+            out.line("return " + field.javaName() + ";");
+            out.outdent();
+            out.line("}");
+            out.line();
+        }
+
+        // чтение
+        out.line("public static " + recordName + " read(JsonParser parser) throws IOException {");
+        out.indent();
+        out.line("if (parser.currentToken() != JsonToken.START_OBJECT) {");
+        out.indent();
+        out.line("parser.skipChildren();");
+        out.line("return null;");
+        out.outdent();
+        out.line("}");
+        for (Field field : fields) {
+            out.line(field.type().declaration() + " " + field.javaName() + " = null;");
+        }
+        out.line("while (parser.nextToken() == JsonToken.FIELD_NAME) {");
+        out.indent();
+        if (fields.isEmpty()) {
+            out.line("parser.nextToken();");
+            out.line("parser.skipChildren();");
+        } else {
+            out.line("String field = parser.currentName();");
+            out.line("parser.nextToken();");
+            out.line("switch (field) {");
+            out.indent();
+            for (Field field : fields) {
+                out.line("case \"" + field.jsonName() + "\" -> " + field.javaName() + " = " + field.type().readExpression("parser") + ";");
+            }
+            out.line("default -> parser.skipChildren();");
+            out.outdent();
+            out.line("}");
+        }
+        out.outdent();
+        out.line("}");
+        List<String> names = fields.stream().map(Field::javaName).toList();
+        out.line("return new " + recordName + "(" + String.join(", ", names) + ");");
+        out.outdent();
+        out.line("}");
+
+        // запись, нужна только типам, которые могут быть параметрами команд
+        if (writable) {
+            out.line();
+            out.line("public void write(JsonGenerator generator) throws IOException {");
+            out.indent();
+            out.line("generator.writeStartObject();");
+            writeFields(out, fields, true);
+            out.line("generator.writeEndObject();");
+            out.outdent();
+            out.line("}");
+        }
+
+        out.outdent();
+        out.line("}");
+    }
+
+    private void writeFields(Source out, List<Field> fields, boolean allNullable) {
+        for (Field field : fields) {
+            boolean nullable = allNullable || field.optional();
+            if (nullable) {
+                out.line("if (" + field.javaName() + " != null) {");
+                out.indent();
+            }
+            out.line("generator.writeFieldName(\"" + field.jsonName() + "\");");
+            out.line(field.type().writeStatement("generator", field.javaName()));
+            if (nullable) {
+                out.outdent();
+                out.line("}");
+            }
+        }
+    }
+
+    private void writeCommand(Source out, String domain, JsonNode command, Set<String> nestedNames) {
+        String method = command.get("name").asText();
+        String factoryName = JAVA_KEYWORDS.contains(method) ? method + "Command" : method;
+        String className = capitalize(method) + "Command";
+        claim(nestedNames, domain, className);
+        List<Field> params = fields(domain, command.path("parameters"));
+        List<Field> required = params.stream().filter(field -> !field.optional()).toList();
+        List<Field> optional = params.stream().filter(Field::optional).toList();
+        List<Field> returns = fields(domain, command.path("returns"));
+        String resultName = returns.isEmpty() ? "Void" : capitalize(method) + "Result";
+        boolean deprecated = command.path("deprecated").asBoolean(false);
+        String description = orDefault(doc(command.path("description").asText("")), "Sends {@code " + domain + "." + method + "}.");
+
+        // фабричный метод
+        out.line();
+        List<String> tags = new ArrayList<>();
+        for (Field field : required) {
+            tags.add("@param " + field.javaName() + " " + orDefault(field.description(), field.jsonName()));
+        }
+        tags.add("@return command for {@code " + domain + "." + method + "}");
+        out.javadoc(description, tags, deprecated);
+        if (deprecated) out.line("@Deprecated");
+        List<String> signature = required.stream().map(field -> field.type().declaration() + " " + field.javaName()).toList();
+        List<String> arguments = required.stream().map(Field::javaName).toList();
+        out.line("public static " + className + " " + factoryName + "(" + String.join(", ", signature) + ") {");
+        out.indent();
+        out.line("return new " + className + "(" + String.join(", ", arguments) + ");");
+        out.outdent();
+        out.line("}");
+
+        // класс команды
+        out.line();
+        out.javadoc("Command {@code " + domain + "." + method + "}. Optional parameters are set with the fluent setters.",
+            List.of("@see #" + factoryName + "(" + String.join(", ", required.stream().map(field -> erasure(field.type())).toList()) + ")"), deprecated);
+        if (deprecated) out.line("@Deprecated");
+        out.line("public static final class " + className + " implements CDPCommand<" + resultName + "> {");
+        out.indent();
+        for (Field field : required) {
+            out.line("private final " + field.type().declaration() + " " + field.javaName() + ";");
+        }
+        for (Field field : optional) {
+            out.line("private " + field.type().declaration() + " " + field.javaName() + ";");
+        }
+        if (!params.isEmpty()) out.line();
+
+        out.line("private " + className + "(" + String.join(", ", signature) + ") {");
+        out.indent();
+        for (Field field : required) {
+            out.line("this." + field.javaName() + " = Objects.requireNonNull(" + field.javaName() + ", \"" + field.jsonName() + "\");");
+        }
+        out.outdent();
+        out.line("}");
+
+        for (Field field : optional) {
+            out.line();
+            out.javadoc(orDefault(field.description(), field.jsonName()), List.of("@return this command"), field.deprecated());
+            if (field.deprecated()) out.line("@Deprecated");
+            out.line("public " + className + " " + field.javaName() + "(" + field.type().declaration() + " " + field.javaName() + ") {");
+            out.indent();
+            out.line("this." + field.javaName() + " = " + field.javaName() + ";");
+            out.line("return this;");
+            out.outdent();
+            out.line("}");
+        }
+
+        out.line();
+        out.line("@Override");
+        out.line("public String getMethod() {");
+        out.indent();
+        out.line("return \"" + domain + "." + method + "\";");
+        out.outdent();
+        out.line("}");
+
+        out.line();
+        out.line("@Override");
+        out.line("public void writeParams(JsonGenerator generator) throws IOException {");
+        out.indent();
+        writeFields(out, params, false);
+        out.outdent();
+        out.line("}");
+
+        out.line();
+        out.line("@Override");
+        out.line("public " + resultName + " readResult(JsonParser parser) throws IOException {");
+        out.indent();
+        if (returns.isEmpty()) {
+            out.line("parser.skipChildren();");
+            out.line("return null;");
+        } else {
+            out.line("return " + resultName + ".read(parser);");
+        }
+        out.outdent();
+        out.line("}");
+        out.outdent();
+        out.line("}");
+
+        if (!returns.isEmpty()) {
+            claim(nestedNames, domain, resultName);
+            out.line();
+            writeRecord(out, resultName, returns, "Result of {@code " + domain + "." + method + "}.", false, null, false);
+        }
+    }
+
+    private static String erasure(JavaType type) {
+        return type.kind() == Kind.LIST ? "List" : type.declaration();
+    }
+
+    private static void claim(Set<String> names, String domain, String name) {
+        if (!names.add(name)) {
+            throw new IllegalStateException("Name clash in domain " + domain + ": " + name);
+        }
+    }
+
+    /**
+     * Turns a description from the schema into javadoc text. The descriptions are markdown, not html.
+     */
+    private static String doc(String text) {
+        return text
+            .replace("&", "&amp;")
+            .replace("<", "&lt;")
+            .replace(">", "&gt;")
+            .replace("*/", "*&#47;")
+            .replace("@", "&#64;")
+            .replace("\n", " ");
+    }
+
+    private static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    private static String orDefault(String value, String fallback) {
+        return value == null || value.isBlank() ? fallback : value;
+    }
+
+    /**
+     * Indented source writer.
+     */
+    private static class Source {
+        private final StringBuilder text = new StringBuilder();
+        private int depth = 0;
+
+        void indent() {
+            depth++;
+        }
+
+        void outdent() {
+            depth--;
+        }
+
+        void line() {
+            text.append('\n');
+        }
+
+        void line(String line) {
+            text.append("    ".repeat(depth)).append(line).append('\n');
+        }
+
+        void javadoc(String description, List<String> tags, boolean deprecated) {
+            line("/**");
+            line(" * " + description);
+            if (!tags.isEmpty() || deprecated) line(" *");
+            for (String tag : tags) {
+                line(" * " + tag);
+            }
+            if (deprecated) line(" * @deprecated deprecated in the protocol");
+            line(" */");
+        }
+
+        @Override
+        public String toString() {
+            return text.toString();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.vityazev_egor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.vityazev_egor.Core.CustomLogger;
+import com.vityazev_egor.Protocol.Target;
+
+/**
+ * Isolated session inside one browser, like an incognito window: its own cookie jar, storage, cache and proxy.
+ * Creating a context takes milliseconds, so one Chrome process can serve many independent sessions.
+ *
+ * <pre>{@code
+ * try (BrowserContext context = driver.newContext("socks5://127.0.0.1:1080")) {
+ *     Tab tab = context.newTab("https://example.com");
+ *     tab.getNavigation().waitFullLoad(10);
+ * }
+ * }</pre>
+ */
+public class BrowserContext implements AutoCloseable {
+    private final CustomLogger logger = new CustomLogger(BrowserContext.class.getName());
+    private final NoDriver driver;
+    private final String contextId;
+    private final List<Tab> tabs = new CopyOnWriteArrayList<>();
+
+    BrowserContext(NoDriver driver, String contextId) {
+        this.driver = driver;
+        this.contextId = contextId;
+    }
+
+    /**
+     * @return CDP id of the browser context
+     */
+    public String getContextId() {
+        return contextId;
+    }
+
+    /**
+     * @return driver whose browser hosts this context
+     */
+    public NoDriver getDriver() {
+        return driver;
+    }
+
+    /**
+     * Opens a blank tab in this context.
+     *
+     * @return the new tab
+     * @throws IOException if the tab can't be created or attached
+     */
+    public Tab newTab() throws IOException {
+        return newTab("about:blank");
+    }
+
+    /**
+     * Opens a tab in this context.
+     *
+     * @param url URL to open in the tab
+     * @return the new tab
+     * @throws IOException if the tab can't be created or attached
+     */
+    public Tab newTab(String url) throws IOException {
+        Tab tab = driver.openTab(url, contextId);
+        tabs.add(tab);
+        return tab;
+    }
+
+    /**
+     * @return open tabs of this context
+     */
+    public List<Tab> listTabs() {
+        return new ArrayList<>(tabs);
+    }
+
+    void forgetTab(Tab tab) {
+        tabs.remove(tab);
+    }
+
+    /**
+     * Closes the tabs of the context and disposes it together with its cookies and storage.
+     */
+    @Override
+    public void close() {
+        tabs.forEach(Tab::close);
+        driver.forgetContext(this);
+        try {
+            driver.getBrowserClient().send(Target.disposeBrowserContext(contextId), 5);
+            logger.info("Disposed browser context " + contextId);
+        } catch (Exception ex) {
+            logger.warning("Failed to dispose browser context " + contextId + ": " + ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.vityazev_egor;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import com.vityazev_egor.Core.CustomLogger;
+import com.vityazev_egor.Core.WebSocketClient;
+import com.vityazev_egor.Protocol.Inspector;
+
+/**
+ * Watches the browser of a {@link NoDriver}: exit of the Chrome process, crash of the page renderer
+ * ({@code Inspector.targetCrashed}) and the connection being closed by Chrome.
+ * <p>
+ * On failure the commands waiting for Chrome are failed at once and new ones are rejected instead of timing out.
+ * With {@link NoDriverOptions.Builder#setMaxRestarts(int)} the browser is relaunched and the driver reattached
+ * to the new main tab, tabs and contexts of the old browser are lost.
+ */
+public class ChromeSupervisor {
+    private final CustomLogger logger = new CustomLogger(ChromeSupervisor.class.getName());
+    // слушатели процесса и соединения живут, пока работает Chrome; сильная ссылка не дала бы собрать забытый драйвер
+    private final WeakReference<NoDriver> driver;
+    private final int maxRestarts;
+    private final Duration restartWindow;
+    // время последних перезапусков в пределах окна
+    private final ArrayDeque<Long> restartTimes = new ArrayDeque<>();
+    private final List<Consumer<String>> failureListeners = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean handlingFailure = new AtomicBoolean();
+    private final AtomicInteger restarts = new AtomicInteger();
+    private final ExecutorService restarter = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "nodriver-supervisor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // события от браузера прошлого запуска игнорируются
+    private volatile int generation = 0;
+    private volatile boolean stopped = false;
+    private volatile String lastFailure;
+
+    ChromeSupervisor(NoDriver driver, int maxRestarts, Duration restartWindow) {
+        this.driver = new WeakReference<>(driver);
+        this.maxRestarts = maxRestarts;
+        this.restartWindow = restartWindow;
+    }
+
+    /**
+     * Starts watching the browser the driver has just connected to.
+     */
+    void watch() {
+        NoDriver driver = this.driver.get();
+        if (driver == null) return;
+        int watched = generation;
+        Process chrome = driver.getChrome();
+        // запуск с профилем уже работающего Chrome передаёт управление ему и сразу выходит, такой процесс не следим
+        if (chrome != null && chrome.isAlive()) {
+            chrome.onExit().thenAccept(process -> onFailure("Chrome exited with code " + process.exitValue(), watched));
+        }
+        WebSocketClient page = driver.getSocketClient();
+        page.addCloseListener(reason -> onFailure("Connection to Chrome closed: " + reason, watched));
+        page.getEventBus().subscribe(Inspector.TargetCrashed.EVENT, event -> onFailure("Page renderer crashed", watched));
+        page.sendAsync(Inspector.enable()).exceptionally(ex -> {
+            logger.warning("Can't enable crash notifications: " + ex.getMessage());
+            return null;
+        });
+    }
+
+    /**
+     * Stops watching, called when the driver exits on purpose.
+     */
+    void stop() {
+        stopped = true;
+        restarter.shutdownNow();
+    }
+
+    /**
+     * Registers a callback for browser failures. It is called before a restart is attempted.
+     *
+     * @param listener Receives the reason of the failure
+     */
+    public void addFailureListener(Consumer<String> listener) {
+        failureListeners.add(listener);
+    }
+
+    /**
+     * @return number of times the browser was relaunched
+     */
+    public int getRestarts() {
+        return restarts.get();
+    }
+
+    /**
+     * @return reason of the last failure, {@code null} if the browser never failed
+     */
+    public String getLastFailure() {
+        return lastFailure;
+    }
+
+    /**
+     * @return whether the browser failed and is being restarted or can't be restarted. A driver whose relaunches
+     * failed until the restart budget was exhausted stays failed for good
+     */
+    public boolean isFailed() {
+        return handlingFailure.get();
+    }
+
+    private void onFailure(String reason, int watched) {
+        NoDriver driver = this.driver.get();
+        if (driver == null || stopped || watched != generation || !handlingFailure.compareAndSet(false, true)) return;
+        lastFailure = reason;
+        logger.error(reason + ", last Chrome output: " + lastConsoleLines(driver));
+        driver.failConnections(new IOException(reason));
+        failureListeners.forEach(listener -> listener.accept(reason));
+        if (!tryReserveRestart()) {
+            logger.warning("Restart budget is exhausted, the driver stays failed");
+            return;
+        }
+        restarter.execute(() -> relaunch(reason));
+    }
+
+    // неудачный запуск повторяется, пока позволяет лимит перезапусков
+    private void relaunch(String reason) {
+        while (!stopped) {
+            NoDriver driver = this.driver.get();
+            if (driver == null) return;
+            try {
+                generation++;
+                if (!driver.restart()) return;
+                restarts.incrementAndGet();
+                logger.info("Chrome relaunched after failure: " + reason);
+                handlingFailure.set(false);
+                watch();
+                return;
+            } catch (IOException ex) {
+                logger.error("Can't relaunch Chrome", ex);
+            }
+            if (!tryReserveRestart()) {
+                logger.warning("Restart budget is exhausted, the driver stays failed");
+                return;
+            }
+        }
+    }
+
+    private synchronized boolean tryReserveRestart() {
+        if (maxRestarts <= 0) return false;
+        long now = System.nanoTime();
+        while (!restartTimes.isEmpty() && now - restartTimes.peekFirst() > restartWindow.toNanos()) {
+            restartTimes.removeFirst();
+        }
+        if (restartTimes.size() >= maxRestarts) return false;
+        restartTimes.addLast(now);
+        return true;
+    }
+
+    private static List<String> lastConsoleLines(NoDriver driver) {
+        List<String> lines = driver.getConsoleOutput();
+        return lines.subList(Math.max(0, lines.size() - 5), lines.size());
+    }
+}
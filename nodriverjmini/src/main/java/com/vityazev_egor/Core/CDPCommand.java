@@ -0,0 +1,40 @@
+package com.vityazev_egor.Core;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+
+/**
+ * A CDP command that knows how to write its parameters and how to read its result.
+ * <p>
+ * Typed commands for every protocol method are generated into {@code com.vityazev_egor.Protocol}
+ * from the vendored protocol schema, e.g. {@code Page.navigate(url)}. {@link CDPCommandBuilder}
+ * implements this interface too, for methods that are not covered by the schema.
+ *
+ * @param <R> type of the command result, {@link Void} for commands without a result
+ */
+public interface CDPCommand<R> {
+
+    /**
+     * @return name of the CDP method, e.g. {@code Page.navigate}
+     */
+    String getMethod();
+
+    /**
+     * Writes the fields of the {@code params} object. The enclosing object is written by the caller.
+     *
+     * @param generator Generator positioned inside the {@code params} object
+     * @throws IOException if the generator fails
+     */
+    void writeParams(JsonGenerator generator) throws IOException;
+
+    /**
+     * Decodes the {@code result} object of the response.
+     *
+     * @param parser Parser positioned on the start of the {@code result} object
+     * @return decoded result, {@code null} for commands without a result
+     * @throws IOException if the result can't be read
+     */
+    R readResult(JsonParser parser) throws IOException;
+}
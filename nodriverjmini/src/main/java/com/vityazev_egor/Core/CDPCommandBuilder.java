@@ -1,30 +1,71 @@
 package com.vityazev_egor.Core;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 
-public class CDPCommandBuilder {
-    private static Integer globalId = 1;
+/**
+ * Untyped CDP command: the method name and parameters are set by hand.
+ * Prefer the generated commands from {@code com.vityazev_egor.Protocol} when the method is covered by the vendored schema.
+ */
+public class CDPCommandBuilder implements CDPCommand<JsonNode> {
+    // id соединений берутся из [1, CONNECTION_ID_LIMIT), id собранных через build() - из [CONNECTION_ID_LIMIT, MAX_VALUE],
+    // поэтому команды из обоих источников не пересекаются в одном соединении
+    static final int CONNECTION_ID_LIMIT = 1 << 30;
+    private static final AtomicInteger globalId = new AtomicInteger(CONNECTION_ID_LIMIT);
     private static final ObjectMapper objectMapper = new ObjectMapper();
-    
-    private final ObjectNode request;
-    private final ObjectNode params;
-    private final CustomLogger logger = new CustomLogger(CDPCommandBuilder.class.getName());
+    private static final JsonFactory jsonFactory = objectMapper.getFactory();
+    private static final ThreadLocal<CommandWriter> commandWriter = ThreadLocal.withInitial(CommandWriter::new);
+
+    private final String method;
+    // пары имя/значение подряд, без промежуточного дерева
+    private Object[] params = new Object[16];
+    private int paramsSize = 0;
+    private static final CustomLogger logger = new CustomLogger(CDPCommandBuilder.class.getName());
 
     private CDPCommandBuilder(String method) {
-        this.request = objectMapper.createObjectNode();
-        this.params = objectMapper.createObjectNode();
-        
-        request.put("id", globalId);
-        request.put("method", method);
-        
-        globalId++;
-        if (globalId > 2147483) {
-            globalId = 1;
+        this.method = method;
+    }
+
+    /**
+     * Reusable character buffer the commands are serialized into. One per thread.
+     */
+    private static class CommandWriter extends Writer {
+        private final StringBuilder buffer = new StringBuilder(256);
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            buffer.append(cbuf, off, len);
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+            buffer.append(str, off, off + len);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        String takeString() {
+            String result = buffer.toString();
+            buffer.setLength(0);
+            // не держим в потоке огромный буфер после одной большой команды
+            if (buffer.capacity() > 64 * 1024) buffer.trimToSize();
+            return result;
         }
     }
 
@@ -35,54 +76,143 @@ public class CDPCommandBuilder {
         return new CDPCommandBuilder(method);
     }
 
+    private CDPCommandBuilder put(String name, Object value) {
+        if (paramsSize == params.length) {
+            params = Arrays.copyOf(params, params.length * 2);
+        }
+        params[paramsSize++] = name;
+        params[paramsSize++] = value;
+        return this;
+    }
+
     /**
      * Adds a string parameter to the command
      */
     public CDPCommandBuilder addParam(String name, String value) {
-        params.put(name, value);
-        return this;
+        return put(name, value);
     }
 
     /**
      * Adds an integer parameter to the command
      */
     public CDPCommandBuilder addParam(String name, int value) {
-        params.put(name, value);
-        return this;
+        return put(name, value);
     }
 
     /**
      * Adds a double parameter to the command
      */
     public CDPCommandBuilder addParam(String name, double value) {
-        params.put(name, value);
-        return this;
+        return put(name, value);
     }
 
     /**
      * Adds a boolean parameter to the command
      */
     public CDPCommandBuilder addParam(String name, boolean value) {
-        params.put(name, value);
-        return this;
+        return put(name, value);
+    }
+
+    @Override
+    public String getMethod() {
+        return method;
+    }
+
+    @Override
+    public void writeParams(JsonGenerator generator) throws IOException {
+        for (int i = 0; i < paramsSize; i += 2) {
+            writeParam(generator, (String) params[i], params[i + 1]);
+        }
+    }
+
+    /**
+     * Reads the {@code result} object of the response into a tree
+     */
+    @Override
+    public JsonNode readResult(JsonParser parser) throws IOException {
+        return objectMapper.readTree(parser);
     }
 
     /**
-     * Builds and returns the JSON string representation of the command
+     * Builds and returns the JSON string representation of the command.
+     * The id is taken from a process-wide counter; prefer passing the builder itself to {@link WebSocketClient},
+     * which numbers commands per connection.
      */
     public String build() {
-        if (!params.isEmpty()) {
-            request.set("params", params);
-        }
-        
+        return build(nextGlobalId());
+    }
+
+    /**
+     * Builds the JSON string representation of the command with the given id
+     */
+    public String build(int id) {
         try {
-            return objectMapper.writeValueAsString(request);
-        } catch (JsonProcessingException e) {
+            return serialize(id);
+        } catch (IOException e) {
             logger.error("Can't build CPD request", e);
             return null;
         }
     }
 
+    /**
+     * Streams the command into the reusable per-thread buffer with {@link JsonGenerator}
+     */
+    String serialize(int id) throws IOException {
+        return serialize(id, this);
+    }
+
+    /**
+     * Streams any command into the reusable per-thread buffer with {@link JsonGenerator}
+     */
+    static String serialize(int id, CDPCommand<?> command) throws IOException {
+        return serialize(id, null, command);
+    }
+
+    /**
+     * Streams any command into the reusable per-thread buffer, addressed to the given flattened session
+     *
+     * @param sessionId Session of the target the command is sent to, {@code null} for the connection's own target
+     */
+    static String serialize(int id, String sessionId, CDPCommand<?> command) throws IOException {
+        CommandWriter writer = commandWriter.get();
+        try (JsonGenerator generator = jsonFactory.createGenerator(writer)) {
+            generator.writeStartObject();
+            generator.writeNumberField("id", id);
+            if (sessionId != null) {
+                generator.writeStringField("sessionId", sessionId);
+            }
+            generator.writeStringField("method", command.getMethod());
+            // пустой params Chrome принимает так же, как отсутствующий
+            generator.writeObjectFieldStart("params");
+            command.writeParams(generator);
+            generator.writeEndObject();
+            generator.writeEndObject();
+        } catch (IOException e) {
+            writer.takeString();
+            throw e;
+        }
+        return writer.takeString();
+    }
+
+    private static void writeParam(JsonGenerator generator, String name, Object value) throws IOException {
+        generator.writeFieldName(name);
+        if (value instanceof String text) {
+            generator.writeString(text);
+        } else if (value instanceof Integer number) {
+            generator.writeNumber(number);
+        } else if (value instanceof Double number) {
+            generator.writeNumber(number);
+        } else if (value instanceof Boolean flag) {
+            generator.writeBoolean(flag);
+        } else {
+            objectMapper.writeValue(generator, value);
+        }
+    }
+
+    private static int nextGlobalId() {
+        return globalId.getAndUpdate(id -> id == Integer.MAX_VALUE ? CONNECTION_ID_LIMIT : id + 1);
+    }
+
     // Static utility methods for parsing results
 
     /**
@@ -103,28 +233,39 @@ public class CDPCommandBuilder {
     }
 
     /**
-     * Parses JavaScript result from response (default field: "value")
+     * Parses JavaScript result of {@code Runtime.evaluate} ({@code result.result.value}) with a streaming parser.
+     * Responses without {@code result.result} fall back to the first {@code value} field anywhere in the response,
+     * like {@link #getJsResult(String, String)}.
      */
     public static Optional<String> getJsResult(String json) {
-        return getJsResult(json, "value");
+        if (!CDPMessage.hasPath(json, "result", "result")) return getJsResult(json, "value");
+        return CDPMessage.extractFrom(json, "result", "result", "value");
     }
 
     /**
-     * Parses command ID from JSON
+     * Parses the whole CDP response into a tree
+     *
+     * @throws IllegalArgumentException if the response is not valid JSON
      */
-    public static Optional<Integer> parseIdFromCommand(String json) {
+    public static JsonNode parseResponse(String json) {
         try {
-            JsonNode command = objectMapper.readTree(json);
-            return Optional.of(Integer.parseInt(command.get("id").asText()));
-        } catch (Exception ex) {
-            return Optional.empty();
+            return objectMapper.readTree(json);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Can't parse CDP response", e);
         }
     }
 
+    /**
+     * Parses command ID from JSON
+     */
+    public static Optional<Integer> parseIdFromCommand(String json) {
+        return CDPMessage.parseId(json);
+    }
+
     /**
      * Gets screenshot data from response
      */
     public static Optional<String> getScreenshotData(String response) {
-        return getJsResult(response, "data");
+        return CDPMessage.extractFrom(response, "result", "data");
     }
 }
\ No newline at end of file
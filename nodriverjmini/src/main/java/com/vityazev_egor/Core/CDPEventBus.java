@@ -0,0 +1,206 @@
+package com.vityazev_egor.Core;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Dispatches CDP events (messages without {@code id}) to listeners registered by method name,
+ * e.g. {@code Page.loadEventFired} or {@code Runtime.consoleAPICalled}.
+ * <p>
+ * Listeners are called on a dedicated thread, one event at a time and in the order the events were received,
+ * so a slow listener delays other listeners but never the delivery of command responses.
+ * Most domains send events only after their {@code <Domain>.enable} command was sent.
+ */
+public class CDPEventBus {
+    private static final ObjectMapper objectMapper = new ObjectMapper()
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final CustomLogger logger = new CustomLogger(CDPEventBus.class.getName());
+    // слушатели получают сообщение целиком, каждый сам решает, как разбирать params
+    private final ConcurrentHashMap<String, List<Consumer<CDPMessage>>> listeners = new ConcurrentHashMap<>();
+    private final ExecutorService dispatcher;
+    // шину сессии закрывают без остановки общего потока соединения
+    private final boolean ownsDispatcher;
+
+    public CDPEventBus() {
+        this.dispatcher = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cdp-events");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.ownsDispatcher = true;
+    }
+
+    /**
+     * Creates a bus that delivers events on the dispatcher thread of {@code parent},
+     * so events of all sessions of one connection keep their order and share a single thread.
+     *
+     * @param parent Bus of the connection
+     */
+    CDPEventBus(CDPEventBus parent) {
+        this.dispatcher = parent.dispatcher;
+        this.ownsDispatcher = false;
+    }
+
+    /**
+     * Handle of a registered listener.
+     */
+    public static class Subscription implements AutoCloseable {
+        private final Runnable unsubscribeAction;
+
+        private Subscription(Runnable unsubscribeAction) {
+            this.unsubscribeAction = unsubscribeAction;
+        }
+
+        /**
+         * Removes the listener. Calling this method more than once has no effect.
+         */
+        public void unsubscribe() {
+            unsubscribeAction.run();
+        }
+
+        @Override
+        public void close() {
+            unsubscribe();
+        }
+    }
+
+    /**
+     * Registers a listener for the given CDP event.
+     *
+     * @param method   CDP event name, e.g. {@code Page.loadEventFired}
+     * @param listener Consumer of the {@code params} object of the event
+     * @return subscription that can be used to remove the listener
+     */
+    public Subscription subscribe(String method, Consumer<JsonNode> listener) {
+        return register(method, event -> {
+            JsonNode params = event.getTree().get("params");
+            listener.accept(params != null ? params : objectMapper.createObjectNode());
+        });
+    }
+
+    /**
+     * Registers a listener for an event generated from the protocol schema, e.g. {@code Page.LoadEventFired.EVENT}.
+     * The parameters are decoded with a streaming parser, no {@link JsonNode} tree is built.
+     *
+     * @param event    Type of the event
+     * @param listener Consumer of the decoded event parameters
+     * @return subscription that can be used to remove the listener
+     */
+    public <T> Subscription subscribe(CDPEventType<T> event, Consumer<T> listener) {
+        return register(event.method(), message -> {
+            try {
+                listener.accept(message.readParams(event.decoder()));
+            } catch (IOException ex) {
+                throw new IllegalArgumentException("Can't decode " + event.method(), ex);
+            }
+        });
+    }
+
+    private Subscription register(String method, Consumer<CDPMessage> listener) {
+        listeners.computeIfAbsent(method, key -> new CopyOnWriteArrayList<>()).add(listener);
+        return new Subscription(() -> {
+            var methodListeners = listeners.get(method);
+            if (methodListeners != null) {
+                methodListeners.remove(listener);
+            }
+        });
+    }
+
+    /**
+     * Registers a typed listener for the given CDP event.
+     * The {@code params} object of the event is converted to {@code type} with Jackson, unknown fields are ignored.
+     *
+     * @param method   CDP event name, e.g. {@code Page.frameNavigated}
+     * @param type     Class the event parameters are mapped to
+     * @param listener Consumer of the mapped event parameters
+     * @return subscription that can be used to remove the listener
+     */
+    public <T> Subscription subscribe(String method, Class<T> type, Consumer<T> listener) {
+        return subscribe(method, params -> listener.accept(objectMapper.convertValue(params, type)));
+    }
+
+    /**
+     * Returns a future that is completed with the {@code params} of the next event with the given name.
+     * The listener is removed automatically once the event arrived or the future was cancelled.
+     *
+     * @param method CDP event name
+     * @return future with the event parameters
+     */
+    public CompletableFuture<JsonNode> next(String method) {
+        CompletableFuture<JsonNode> event = new CompletableFuture<>();
+        Subscription subscription = subscribe(method, event::complete);
+        event.whenComplete((params, error) -> subscription.unsubscribe());
+        return event;
+    }
+
+    /**
+     * Returns a future that is completed with the decoded parameters of the next event of the given type.
+     *
+     * @param event Type of the event, e.g. {@code Page.LoadEventFired.EVENT}
+     * @return future with the event parameters
+     */
+    public <T> CompletableFuture<T> next(CDPEventType<T> event) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Subscription subscription = subscribe(event, result::complete);
+        result.whenComplete((params, error) -> subscription.unsubscribe());
+        return result;
+    }
+
+    /**
+     * Queues an event for dispatching. Called from the websocket I/O thread,
+     * the event body is parsed on the dispatcher thread and only if somebody listens to it.
+     *
+     * @param event CDP event message
+     */
+    void dispatch(CDPMessage event) {
+        String method = event.getMethod().orElse(null);
+        if (method == null || !hasListeners(method)) return;
+        try {
+            dispatcher.execute(() -> deliver(method, event));
+        } catch (RejectedExecutionException ex) {
+            logger.warning("Event bus is closed, event was dropped");
+        }
+    }
+
+    private boolean hasListeners(String method) {
+        var methodListeners = listeners.get(method);
+        return methodListeners != null && !methodListeners.isEmpty();
+    }
+
+    private void deliver(String method, CDPMessage event) {
+        var methodListeners = listeners.get(method);
+        if (methodListeners == null || methodListeners.isEmpty()) return;
+
+        for (Consumer<CDPMessage> listener : methodListeners) {
+            try {
+                listener.accept(event);
+            } catch (IllegalArgumentException ex) {
+                logger.error("Can't parse CDP event " + method, ex);
+            } catch (Exception ex) {
+                logger.error("Listener of " + method + " failed", ex);
+            }
+        }
+    }
+
+    /**
+     * Removes all listeners and stops the dispatcher thread, unless the thread is shared with the connection.
+     */
+    public void close() {
+        listeners.clear();
+        if (ownsDispatcher) {
+            dispatcher.shutdown();
+        }
+    }
+}
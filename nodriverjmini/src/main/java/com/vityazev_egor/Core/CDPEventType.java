@@ -0,0 +1,13 @@
+package com.vityazev_egor.Core;
+
+/**
+ * Name of a CDP event together with the decoder of its {@code params} object.
+ * Every generated event record exposes its type as the {@code EVENT} constant,
+ * e.g. {@code Page.LoadEventFired.EVENT}, so it can be passed to {@link CDPEventBus#subscribe(CDPEventType, java.util.function.Consumer)}.
+ *
+ * @param method  CDP event name, e.g. {@code Page.loadEventFired}
+ * @param decoder Streaming decoder of the event parameters
+ * @param <T>     type of the event parameters
+ */
+public record CDPEventType<T>(String method, ProtocolCodec.Decoder<T> decoder) {
+}
@@ -0,0 +1,18 @@
+package com.vityazev_egor.Core;
+
+import lombok.Getter;
+
+/**
+ * Error response of a CDP command, e.g. {@code {"code":-32000,"message":"Cannot find context with specified id"}}.
+ */
+@Getter
+public class CDPException extends RuntimeException {
+    private final int code;
+    private final String method;
+
+    public CDPException(String method, int code, String message) {
+        super(String.format("%s failed: %s (%d)", method, message, code));
+        this.method = method;
+        this.code = code;
+    }
+}
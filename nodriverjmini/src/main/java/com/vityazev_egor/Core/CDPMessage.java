@@ -0,0 +1,380 @@
+package com.vityazev_egor.Core;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.ref.Cleaner;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Inbound CDP frame with its routing header.
+ * <p>
+ * Only the top level {@code id}, {@code method} and {@code sessionId} fields are read with a streaming parser,
+ * nested objects such as {@code result} or {@code params} are skipped without being materialised.
+ * The full tree is built lazily on the first {@link #getTree()} call, and single values can be
+ * pulled out of the raw frame with {@link #extract(String...)} without building a tree at all.
+ * <p>
+ * Large frames are kept in a temporary file instead of memory (see {@link #getSpoolFile()}).
+ * Their values can be streamed to a consumer with {@link #writeValueTo(Writer, String...)}
+ * and {@link #writeBinaryValueTo(OutputStream, String...)}. The file is deleted when the message is garbage collected.
+ */
+public class CDPMessage {
+    private static final JsonFactory jsonFactory = new JsonFactory();
+    private static final Cleaner spoolCleaner = Cleaner.create();
+
+    private final String raw;
+    private final Path spoolFile;
+    private final Integer id;
+    private final String method;
+    private final String sessionId;
+    private volatile JsonNode tree;
+
+    private CDPMessage(String raw, Path spoolFile, Integer id, String method, String sessionId) {
+        this.raw = raw;
+        this.spoolFile = spoolFile;
+        this.id = id;
+        this.method = method;
+        this.sessionId = sessionId;
+    }
+
+    /**
+     * Reads the routing header of a CDP frame.
+     *
+     * @param raw Raw JSON frame
+     * @return parsed message, or empty if the frame is not a JSON object
+     */
+    public static Optional<CDPMessage> parse(String raw) {
+        try (JsonParser parser = jsonFactory.createParser(raw)) {
+            return parseHeader(parser, raw, null);
+        } catch (IOException ex) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Reads the routing header of a CDP frame spooled to a file.
+     * The file is owned by the returned message and deleted together with it.
+     *
+     * @param spoolFile File with the raw JSON frame in UTF-8
+     * @return parsed message, or empty if the frame is not a JSON object
+     */
+    public static Optional<CDPMessage> parse(Path spoolFile) {
+        Optional<CDPMessage> message;
+        try (JsonParser parser = jsonFactory.createParser(Files.newBufferedReader(spoolFile, StandardCharsets.UTF_8))) {
+            message = parseHeader(parser, null, spoolFile);
+        } catch (IOException ex) {
+            message = Optional.empty();
+        }
+        message.ifPresentOrElse(
+            cdpMessage -> spoolCleaner.register(cdpMessage, () -> deleteSpoolFile(spoolFile)),
+            () -> deleteSpoolFile(spoolFile)
+        );
+        return message;
+    }
+
+    private static Optional<CDPMessage> parseHeader(JsonParser parser, String raw, Path spoolFile) throws IOException {
+        Integer id = null;
+        String method = null;
+        String sessionId = null;
+        if (parser.nextToken() != JsonToken.START_OBJECT) return Optional.empty();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "id" -> id = value == JsonToken.VALUE_NUMBER_INT ? parser.getIntValue() : null;
+                case "method" -> method = parser.getValueAsString();
+                case "sessionId" -> sessionId = parser.getValueAsString();
+                default -> { }
+            }
+            // для скалярных значений ничего не делает, объекты пропускаются без разбора
+            parser.skipChildren();
+        }
+        return Optional.of(new CDPMessage(raw, spoolFile, id, method, sessionId));
+    }
+
+    private static void deleteSpoolFile(Path spoolFile) {
+        try {
+            Files.deleteIfExists(spoolFile);
+        } catch (IOException ignored) {
+            // временный файл, удалится вместе с tmp
+        }
+    }
+
+    /**
+     * Reads only the {@code id} of a frame. Stops as soon as the field is found,
+     * so for outgoing commands (where {@code id} is the first field) the rest of the frame is not scanned.
+     *
+     * @param raw Raw JSON frame
+     * @return id of the frame, or empty if there is none
+     */
+    public static Optional<Integer> parseId(String raw) {
+        try (JsonParser parser = jsonFactory.createParser(raw)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) return Optional.empty();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (field.equals("id")) {
+                    return value == JsonToken.VALUE_NUMBER_INT ? Optional.of(parser.getIntValue()) : Optional.empty();
+                }
+                parser.skipChildren();
+            }
+        } catch (IOException ex) {
+            return Optional.empty();
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Moves the parser to the value at the given path. Sibling fields are skipped without being materialised.
+     *
+     * @return token of the value, or {@code null} if the path does not exist
+     */
+    private static JsonToken navigate(JsonParser parser, String... path) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) return null;
+        int depth = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (!field.equals(path[depth])) {
+                parser.skipChildren();
+                continue;
+            }
+            if (depth == path.length - 1) return value;
+            if (value != JsonToken.START_OBJECT) return null;
+            depth++;
+        }
+        return null;
+    }
+
+    private static Optional<String> readScalar(JsonParser parser, String... path) throws IOException {
+        JsonToken value = navigate(parser, path);
+        return value != null && value.isScalarValue() && value != JsonToken.VALUE_NULL
+            ? Optional.ofNullable(parser.getValueAsString())
+            : Optional.empty();
+    }
+
+    /**
+     * Extracts a scalar value by its path from the root of the frame,
+     * e.g. {@code extract("result", "result", "value")} for {@code Runtime.evaluate}.
+     * Sibling fields are skipped without being materialised.
+     *
+     * @param path Field names from the root object to the value
+     * @return text representation of the scalar value, or empty if the path does not exist or points to an object, array or null
+     */
+    public Optional<String> extract(String... path) {
+        try (JsonParser parser = createParser()) {
+            return readScalar(parser, path);
+        } catch (IOException ex) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Extracts a scalar value by its path from the root of a raw frame without parsing its header.
+     *
+     * @param raw  Raw JSON frame
+     * @param path Field names from the root object to the value
+     * @return text representation of the scalar value, or empty if the path does not exist
+     * @see #extract(String...)
+     */
+    public static Optional<String> extractFrom(String raw, String... path) {
+        try (JsonParser parser = jsonFactory.createParser(raw)) {
+            return readScalar(parser, path);
+        } catch (IOException ex) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * @param raw  Text of a frame
+     * @param path Field names from the root object
+     * @return whether the frame has any value at the path
+     */
+    static boolean hasPath(String raw, String... path) {
+        try (JsonParser parser = jsonFactory.createParser(raw)) {
+            return navigate(parser, path) != null;
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Writes the string value at the given path into the writer without creating a {@link String} of it.
+     *
+     * @param writer Destination of the text
+     * @param path   Field names from the root object to the value
+     * @return {@code true} if the value was found and written
+     * @throws IOException if the frame can't be read or the writer fails
+     */
+    public boolean writeValueTo(Writer writer, String... path) throws IOException {
+        try (JsonParser parser = createParser()) {
+            if (navigate(parser, path) != JsonToken.VALUE_STRING) return false;
+            parser.getText(writer);
+            return true;
+        }
+    }
+
+    /**
+     * Decodes the base64 string value at the given path (e.g. {@code result.data} of {@code Page.captureScreenshot})
+     * straight into the stream, without keeping the encoded or decoded data in memory.
+     *
+     * @param out  Destination of the decoded bytes
+     * @param path Field names from the root object to the value
+     * @return {@code true} if the value was found and written
+     * @throws IOException if the frame can't be read, the value is not valid base64 or the stream fails
+     */
+    public boolean writeBinaryValueTo(OutputStream out, String... path) throws IOException {
+        try (JsonParser parser = createParser()) {
+            if (navigate(parser, path) != JsonToken.VALUE_STRING) return false;
+            parser.readBinaryValue(out);
+            return true;
+        }
+    }
+
+    /**
+     * Decodes the {@code result} object of a command response with the typed decoder of the command.
+     *
+     * @param command Command this message is the response to
+     * @return decoded result, {@code null} for commands without a result
+     * @throws CDPException if the response is a protocol error
+     * @throws IOException  if the frame can't be read
+     */
+    public <R> R readResult(CDPCommand<R> command) throws IOException {
+        try (JsonParser parser = createParser()) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) throw new IOException("CDP response is not an object");
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (field.equals("result") && value == JsonToken.START_OBJECT) {
+                    return command.readResult(parser);
+                } else if (field.equals("error") && value == JsonToken.START_OBJECT) {
+                    throw readError(parser, command.getMethod());
+                }
+                parser.skipChildren();
+            }
+        }
+        throw new IOException("CDP response has neither result nor error");
+    }
+
+    private static CDPException readError(JsonParser parser, String method) throws IOException {
+        int code = 0;
+        String message = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "code" -> code = parser.getValueAsInt();
+                case "message" -> message = parser.getValueAsString();
+                default -> parser.skipChildren();
+            }
+        }
+        return new CDPException(method, code, message);
+    }
+
+    /**
+     * Decodes the {@code params} object of an event. An event without parameters is decoded from an empty object.
+     *
+     * @param decoder Streaming decoder of the parameters, e.g. {@code Page.LoadEventFired::read}
+     * @return decoded parameters
+     * @throws IOException if the frame can't be read
+     */
+    public <T> T readParams(ProtocolCodec.Decoder<T> decoder) throws IOException {
+        try (JsonParser parser = createParser()) {
+            if (navigate(parser, "params") == JsonToken.START_OBJECT) {
+                return decoder.read(parser);
+            }
+        }
+        try (JsonParser parser = jsonFactory.createParser("{}")) {
+            parser.nextToken();
+            return decoder.read(parser);
+        }
+    }
+
+    /**
+     * Returns the value of a {@code Runtime.evaluate} response ({@code result.result.value}).
+     *
+     * @return text representation of the value, or empty if the evaluation produced no scalar value
+     */
+    public Optional<String> getJsResult() {
+        return extract("result", "result", "value");
+    }
+
+    /**
+     * Returns the full JSON tree of the frame. The tree is parsed once on the first call.
+     *
+     * @return root node of the frame
+     */
+    public JsonNode getTree() {
+        JsonNode result = tree;
+        if (result == null) {
+            result = spoolFile == null ? CDPCommandBuilder.parseResponse(raw) : CDPCommandBuilder.parseResponse(getRaw());
+            tree = result;
+        }
+        return result;
+    }
+
+    /**
+     * Opens a reader over the raw frame. Prefer it over {@link #getRaw()} for spooled frames.
+     *
+     * @return reader of the raw JSON frame
+     * @throws IOException if the spool file can't be opened
+     */
+    public Reader openReader() throws IOException {
+        return spoolFile == null ? new StringReader(raw) : Files.newBufferedReader(spoolFile, StandardCharsets.UTF_8);
+    }
+
+    private JsonParser createParser() throws IOException {
+        return jsonFactory.createParser(openReader());
+    }
+
+    /**
+     * Returns the raw frame. For spooled frames the whole file is read into memory.
+     *
+     * @return raw JSON frame
+     */
+    public String getRaw() {
+        if (spoolFile == null) return raw;
+        try {
+            return Files.readString(spoolFile, StandardCharsets.UTF_8);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Can't read spooled CDP message", ex);
+        }
+    }
+
+    /**
+     * @return file with the raw frame if the frame was too large to be kept in memory
+     */
+    public Optional<Path> getSpoolFile() {
+        return Optional.ofNullable(spoolFile);
+    }
+
+    public Optional<Integer> getId() {
+        return Optional.ofNullable(id);
+    }
+
+    public Optional<String> getMethod() {
+        return Optional.ofNullable(method);
+    }
+
+    public Optional<String> getSessionId() {
+        return Optional.ofNullable(sessionId);
+    }
+
+    /**
+     * @return {@code true} if the frame is an event (has a method and no id)
+     */
+    public boolean isEvent() {
+        return id == null && method != null;
+    }
+}
@@ -0,0 +1,99 @@
+package com.vityazev_egor.Core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * A group of CDP commands that are written to the socket back to back without waiting
+ * for the previous response. Responses are gathered by id, so the whole batch costs
+ * a single round trip.
+ * <p>
+ * Chrome executes commands of one target in the order they were received,
+ * so the batch keeps the ordering semantics of sequential calls.
+ *
+ * <pre>{@code
+ * var results = socketClient.batch()
+ *     .add(pressedCommand)
+ *     .add(releasedCommand)
+ *     .execute();
+ * }</pre>
+ */
+public class CommandBatch {
+    private static final int DEFAULT_TIMEOUT_SECONDS = 2;
+
+    private final CustomLogger logger = new CustomLogger(CommandBatch.class.getName());
+    private final WebSocketClient socketClient;
+    private final List<Supplier<CompletableFuture<CDPMessage>>> commands = new ArrayList<>();
+    private int timeOutSeconds = DEFAULT_TIMEOUT_SECONDS;
+
+    CommandBatch(WebSocketClient socketClient) {
+        this.socketClient = socketClient;
+    }
+
+    /**
+     * Adds a command to the batch.
+     *
+     * @param command JSON command created with {@link CDPCommandBuilder}
+     * @return this batch
+     */
+    public CommandBatch add(String command) {
+        commands.add(() -> socketClient.sendMessageAsync(command, timeOutSeconds));
+        return this;
+    }
+
+    /**
+     * Adds a command to the batch. The id is allocated by the connection when the batch is executed.
+     *
+     * @param command Command to send
+     * @return this batch
+     */
+    public CommandBatch add(CDPCommand<?> command) {
+        commands.add(() -> socketClient.sendMessageAsync(command, timeOutSeconds));
+        return this;
+    }
+
+    /**
+     * Sets the timeout for the whole batch.
+     *
+     * @param timeOutSeconds Maximum time to wait for all responses in seconds
+     * @return this batch
+     */
+    public CommandBatch timeOutSeconds(int timeOutSeconds) {
+        this.timeOutSeconds = timeOutSeconds;
+        return this;
+    }
+
+    /**
+     * Sends all commands and returns a future that is completed when every response has arrived.
+     * A command that failed or timed out is represented by an empty {@link Optional},
+     * the other results are not affected.
+     *
+     * @return future with raw responses in the order the commands were added
+     */
+    public CompletableFuture<List<Optional<String>>> executeAsync() {
+        List<CompletableFuture<Optional<String>>> responses = new ArrayList<>(commands.size());
+        for (var command : commands) {
+            responses.add(command.get()
+                .thenApply(response -> Optional.of(response.getRaw()))
+                .exceptionally(ex -> {
+                    logger.error("Batched command failed: " + ex.getMessage());
+                    return Optional.empty();
+                }));
+        }
+        return CompletableFuture.allOf(responses.toArray(CompletableFuture[]::new))
+            .thenApply(ignored -> responses.stream().map(CompletableFuture::join).toList());
+    }
+
+    /**
+     * Sends all commands and waits for every response.
+     *
+     * @return raw responses in the order the commands were added
+     * @see #executeAsync()
+     */
+    public List<Optional<String>> execute() {
+        return executeAsync().join();
+    }
+}
@@ -1,27 +1,35 @@
 package com.vityazev_egor.Core;
 
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.CountDownLatch;
-
-import lombok.Getter;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+/**
+ * Reads the console output of Chrome and reports the browser websocket url
+ * as soon as Chrome prints {@code DevTools listening on ws://...}.
+ * The last {@value #MAX_CONSOLE_LINES} lines are kept for diagnostics, e.g. after a crash.
+ */
 public class ConsoleListener implements Runnable{
+    public static final int MAX_CONSOLE_LINES = 500;
+    private static final Pattern DEVTOOLS_LINE = Pattern.compile("DevTools listening on (ws://\\S+)");
+
     private final Process process;
     private final boolean debugMode;
-    private final CountDownLatch initLatch;
     private final CustomLogger logger;
-    @Getter
-    private List<String> consoleMessages = new ArrayList<>();
-    @Getter
-    private volatile boolean initializationSuccessful = false;
+    // кольцевой буфер: долго работающий Chrome пишет в консоль без конца
+    private final ArrayDeque<String> consoleMessages = new ArrayDeque<>(MAX_CONSOLE_LINES);
+    // завершается url браузера; если Chrome вышел, так и не напечатав его, - исключением
+    private final CompletableFuture<String> devToolsUrl = new CompletableFuture<>();
 
-    public ConsoleListener(Process process, boolean debugMode, CountDownLatch initLatch){
+    public ConsoleListener(Process process, boolean debugMode){
         this.process = process;
         this.debugMode = debugMode;
-        this.initLatch = initLatch;
         this.logger = new CustomLogger(ConsoleListener.class.getName());
     }
 
@@ -36,11 +44,18 @@ public class ConsoleListener implements Runnable{
                 if (debugMode) {
                     logger.info("Chrome: " + line);
                 }
+                synchronized (consoleMessages) {
+                    if (consoleMessages.size() == MAX_CONSOLE_LINES) {
+                        consoleMessages.removeFirst();
+                    }
+                    consoleMessages.addLast(line);
+                }
                 
-                // Сигнализируем об инициализации при первом сообщении от Chrome
-                if (!initializationSuccessful) {
-                    initializationSuccessful = true;
-                    initLatch.countDown();
+                if (!devToolsUrl.isDone()) {
+                    Matcher matcher = DEVTOOLS_LINE.matcher(line);
+                    if (matcher.find()) {
+                        devToolsUrl.complete(matcher.group(1));
+                    }
                 }
             }
             
@@ -48,13 +63,36 @@ public class ConsoleListener implements Runnable{
             if (debugMode) {
                 logger.info("Chrome process exited with code: " + exitCode);
             }
+            devToolsUrl.completeExceptionally(new IOException("Chrome exited with code " + exitCode + " before DevTools started listening"));
         } catch (Exception e) {
             logger.error("Error in Chrome process monitoring", e);
-            // Сигнализируем об ошибке инициализации
-            initLatch.countDown();
+            devToolsUrl.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * @return copy of the last lines Chrome printed, oldest first
+     */
+    public List<String> getConsoleMessages(){
+        synchronized (consoleMessages) {
+            return new ArrayList<>(consoleMessages);
         }
     }
 
+    /**
+     * @return future with the browser websocket url from the {@code DevTools listening on} line
+     */
+    public CompletableFuture<String> getDevToolsUrl(){
+        return devToolsUrl;
+    }
+
+    /**
+     * @return whether Chrome reported that DevTools is listening
+     */
+    public boolean isInitializationSuccessful(){
+        return devToolsUrl.isDone() && !devToolsUrl.isCompletedExceptionally();
+    }
+
     public long getPid(){
         return process.pid();
     }    
@@ -1,19 +1,22 @@
 package com.vityazev_egor.Core.Driver;
 
+import static com.vityazev_egor.Protocol.Input.dispatchKeyEvent;
+import static com.vityazev_egor.Protocol.Input.dispatchMouseEvent;
+
 import java.util.ArrayList;
 import java.util.List;
 
-import com.vityazev_egor.NoDriver;
+import com.vityazev_egor.Tab;
 import com.vityazev_egor.Core.CDPCommandBuilder;
 import com.vityazev_egor.Core.CustomLogger;
 import com.vityazev_egor.Core.WebElements.WebElement;
 
 public class Input {
-    private final NoDriver driver;
+    private final Tab tab;
     private final CustomLogger logger;
 
-    public Input (NoDriver driver){
-        this.driver = driver;
+    public Input (Tab tab){
+        this.tab = tab;
         this.logger = new CustomLogger(Input.class.getName());
     }
 
@@ -24,21 +27,17 @@ public class Input {
      * @param y The Y coordinate to move the mouse to.
      */
     public void emulateMouseMove(Integer x, Integer y){
-        String command = CDPCommandBuilder.create("Input.dispatchMouseEvent")
-            .addParam("type", "mouseMoved")
-            .addParam("x", x)
-            .addParam("y", y)
-            .addParam("modifiers", 0)
-            .addParam("button", "none")
-            .addParam("buttons", 0)
-            .addParam("pointerType", "mouse")
-            .build();
-        driver.getSocketClient().sendCommand(command);
+        var command = dispatchMouseEvent("mouseMoved", x.doubleValue(), y.doubleValue())
+            .modifiers(0)
+            .button("none")
+            .buttons(0)
+            .pointerType("mouse");
+        tab.getSocketClient().sendCommand(command);
     }
 
     // NOT WORKING | TESTING
     public void emulateMouseWheel(Integer deltaY, Integer x, Integer y){
-        String command = CDPCommandBuilder.create("Input.dispatchMouseEvent")
+        CDPCommandBuilder command = CDPCommandBuilder.create("Input.dispatchMouseEvent")
             .addParam("type", "mouseWheel")
             .addParam("x", x)
             .addParam("y", y)
@@ -46,9 +45,8 @@ public class Input {
             .addParam("deltaY", deltaY)
             .addParam("modifiers", 0)
             .addParam("button", "middle")
-            .addParam("buttons", 0)
-            .build();
-        driver.getSocketClient().sendCommand(command);
+            .addParam("buttons", 0);
+        tab.getSocketClient().sendCommand(command);
     }
 
     /**
@@ -59,28 +57,23 @@ public class Input {
      */
     public void emulateClick(Integer x, Integer y){
         // Mouse pressed event
-        String pressedCommand = CDPCommandBuilder.create("Input.dispatchMouseEvent")
-            .addParam("type", "mousePressed")
-            .addParam("x", x)
-            .addParam("y", y)
-            .addParam("button", "left")
-            .addParam("buttons", 1)
-            .addParam("clickCount", 1)
-            .addParam("pointerType", "mouse")
-            .build();
+        var pressedCommand = dispatchMouseEvent("mousePressed", x.doubleValue(), y.doubleValue())
+            .button("left")
+            .buttons(1)
+            .clickCount(1)
+            .pointerType("mouse");
 
         // Mouse released event
-        String releasedCommand = CDPCommandBuilder.create("Input.dispatchMouseEvent")
-            .addParam("type", "mouseReleased")
-            .addParam("x", x)
-            .addParam("y", y)
-            .addParam("button", "left")
-            .addParam("buttons", 0)
-            .addParam("pointerType", "mouse")
-            .build();
+        var releasedCommand = dispatchMouseEvent("mouseReleased", x.doubleValue(), y.doubleValue())
+            .button("left")
+            .buttons(0)
+            .pointerType("mouse");
 
-        driver.getSocketClient().sendCommand(pressedCommand);
-        driver.getSocketClient().sendCommand(releasedCommand);
+        // оба события уходят одной пачкой, ответы собираются по id
+        tab.getSocketClient().batch()
+            .add(pressedCommand)
+            .add(releasedCommand)
+            .execute();
     }
 
     /**
@@ -119,11 +112,8 @@ public class Input {
     public void enterText(WebElement element, String text){
         element.getFocus();
         for (char c : text.toCharArray()) {
-            String command = CDPCommandBuilder.create("Input.dispatchKeyEvent")
-                .addParam("type", "char")
-                .addParam("text", String.valueOf(c))
-                .build();
-            driver.getSocketClient().sendAndWaitResult(1, command, 15);
+            var command = dispatchKeyEvent("char").text(String.valueOf(c));
+            tab.getSocketClient().sendAndWaitResult(1, command);
         }
     }
 
@@ -136,9 +126,6 @@ public class Input {
      */
     public void insertText(WebElement element, String text){
         element.getFocus();
-        String command = CDPCommandBuilder.create("Input.insertText")
-            .addParam("text", text)
-            .build();
-        driver.getSocketClient().sendCommand(command);
+        tab.getSocketClient().sendCommand(com.vityazev_egor.Protocol.Input.insertText(text));
     }
 }
@@ -1,23 +1,25 @@
 package com.vityazev_egor.Core.Driver;
 
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Base64;
 import java.util.Optional;
 
 import org.apache.commons.imaging.Imaging;
 
-import com.vityazev_egor.NoDriver;
-import com.vityazev_egor.Core.CDPCommandBuilder;
+import com.vityazev_egor.Tab;
 import com.vityazev_egor.Core.CustomLogger;
+import com.vityazev_egor.Protocol.Network;
+import com.vityazev_egor.Protocol.Page;
 
 public class Misc {
-    private final NoDriver driver;
+    private final Tab tab;
     private final CustomLogger logger;
 
-    public Misc(NoDriver driver){
-        this.driver = driver;
+    public Misc(Tab tab){
+        this.tab = tab;
         this.logger = new CustomLogger(this.getClass().getName());
     }
 
@@ -31,16 +33,20 @@ public class Misc {
      * @return An {@link Optional} containing the captured screenshot as a {@link BufferedImage}, or an empty {@link Optional} if capturing fails.
      */
     public Optional<BufferedImage> captureScreenshot(Path screenSavePath){
-        String command = CDPCommandBuilder.create("Page.captureScreenshot")
-            .addParam("format", "png")
-            .build();
-        
-        var response = driver.getSocketClient().sendAndWaitResult(2, command);
-        if (response.isEmpty()) return Optional.empty();
-        var baseData = CDPCommandBuilder.getScreenshotData(response.get());
-        if (baseData.isEmpty()) return Optional.empty();
-        
-        byte[] imageBytes = Base64.getDecoder().decode(baseData.get());
+        Page.CaptureScreenshotCommand command = Page.captureScreenshot().format("png");
+
+        byte[] imageBytes;
+        try {
+            var response = tab.getSocketClient().sendMessageAsync(command, 2).join();
+            // base64 декодируется прямо из сообщения, без промежуточной строки
+            var decoded = new ByteArrayOutputStream();
+            if (!response.writeBinaryValueTo(decoded, "result", "data")) return Optional.empty();
+            imageBytes = decoded.toByteArray();
+        } catch (Exception e) {
+            logger.warning("Can't capture screenshot: " + e.getMessage());
+            return Optional.empty();
+        }
+
         try {
             if (screenSavePath != null) Files.write(screenSavePath, imageBytes);
             // вот тут я преобразую байты картинки в формате PNG
@@ -51,6 +57,27 @@ public class Misc {
         }
     }
 
+    /**
+     * Captures a screenshot of the current tab and streams it straight into a PNG file.
+     * Unlike {@link #captureScreenshot(Path)} the image is never decoded or held in memory as a whole,
+     * which makes it suitable for full-resolution screenshots of very large pages.
+     *
+     * @param screenSavePath The path where the screenshot should be saved.
+     * @param timeOutSeconds Maximum time to wait for the screenshot in seconds.
+     * @return {@code true} if the screenshot was saved, {@code false} otherwise.
+     */
+    public boolean saveScreenshot(Path screenSavePath, Integer timeOutSeconds){
+        Page.CaptureScreenshotCommand command = Page.captureScreenshot().format("png");
+
+        try (OutputStream out = Files.newOutputStream(screenSavePath)) {
+            var response = tab.getSocketClient().sendMessageAsync(command, timeOutSeconds).join();
+            return response.writeBinaryValueTo(out, "result", "data");
+        } catch (Exception e) {
+            logger.warning("Can't save screenshot: " + e.getMessage());
+            return false;
+        }
+    }
+
     /**
      * Captures a screenshot of the current browser window without saving it to a file.
      *
@@ -64,8 +91,7 @@ public class Misc {
      * Clears all cookies stored in the browser session.
      */
     public void clearCookies(){
-        String command = CDPCommandBuilder.create("Network.clearBrowserCookies").build();
-        driver.getSocketClient().sendCommand(command);
+        tab.getSocketClient().sendCommand(Network.clearBrowserCookies());
     }
 
     /**
@@ -75,9 +101,6 @@ public class Misc {
      * @param enabled {@code true} to enable CSP bypass, {@code false} to disable it.
      */
     public void setBypassCSP(Boolean enabled){
-        String command = CDPCommandBuilder.create("Page.setBypassCSP")
-            .addParam("enabled", enabled)
-            .build();
-        driver.getSocketClient().sendCommand(command);
+        tab.getSocketClient().sendCommand(Page.setBypassCSP(enabled));
     }
 }
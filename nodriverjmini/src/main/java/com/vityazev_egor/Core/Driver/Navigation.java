@@ -3,22 +3,22 @@ package com.vityazev_egor.Core.Driver;
 import java.util.function.BiConsumer;
 
 import com.vityazev_egor.Core.LambdaWaitTask;
-import com.vityazev_egor.NoDriver;
-import com.vityazev_egor.Core.CDPCommandBuilder;
+import com.vityazev_egor.Tab;
 import com.vityazev_egor.Core.CustomLogger;
 import com.vityazev_egor.Core.Shared;
 import com.vityazev_egor.Core.WebElements.By;
+import com.vityazev_egor.Protocol.Page;
 
 public class Navigation {
-    private final NoDriver driver;
+    private final Tab tab;
     private final CustomLogger logger;
     private final LambdaWaitTask waitFullLoadTask;
 
-    public Navigation(NoDriver driver){
-        this.driver = driver;
+    public Navigation(Tab tab){
+        this.tab = tab;
         this.logger = new CustomLogger(Navigation.class.getName());
         waitFullLoadTask = new LambdaWaitTask(() ->
-                driver.executeJSAndGetResult("document.readyState")
+                tab.executeJSAndGetResult("document.readyState")
                 .map(result -> result.equalsIgnoreCase("complete"))
                 .orElse(false)
         );
@@ -30,18 +30,15 @@ public class Navigation {
      * @param url The URL to be loaded.
      */
     public void loadUrl(String url){
-        String command = CDPCommandBuilder.create("Page.navigate")
-            .addParam("url", url)
-            .build();
-        driver.getSocketClient().sendCommand(command);
+        tab.getSocketClient().sendCommand(Page.navigate(url));
     }
 
     public void goBack(){
-        driver.executeJS("window.history.back()");
+        tab.executeJS("window.history.back()");
     }
 
     public void goForward(){
-        driver.executeJS("window.history.forward()");
+        tab.executeJS("window.history.forward()");
     }
 
     /**
@@ -83,7 +80,7 @@ public class Navigation {
         }
 
         try {
-            var html = driver.getHtml().orElseThrow(() -> new Exception("Can't get html of page"));
+            var html = tab.getHtml().orElseThrow(() -> new Exception("Can't get html of page"));
             if (!html.contains("ray-id"))
                 return true;
         }
@@ -94,12 +91,12 @@ public class Navigation {
         logger.warning("Detected CloudFlare");
         var task = new LambdaWaitTask(()->{
            try{
-               var currentHtml = driver.getHtml().orElseThrow(() -> new Exception("Can't get html of page"));
-               var currentTitle = driver.getTitle().orElseThrow(() -> new Exception("Can't get title of page"));
+               var currentHtml = tab.getHtml().orElseThrow(() -> new Exception("Can't get html of page"));
+               var currentTitle = tab.getTitle().orElseThrow(() -> new Exception("Can't get title of page"));
                if (!currentHtml.contains("ray-id") && !currentTitle.contains("Just a moment"))
                    return true;
 
-               var spacer = driver.findElement(By.cssSelector("div[style*=\"display: grid;\"]"));
+               var spacer = tab.findElement(By.cssSelector("div[style*=\"display: grid;\"]"));
                var spacerPoint = spacer.getPosition().orElseThrow(() -> new Exception("Can't get spacer position"));
                var spacerSize = spacer.getSize().orElseThrow(() -> new Exception("Can't get spacer size"));
                Integer realX = spacerPoint.x - spacerSize.width / 2 + 30;
@@ -124,7 +121,7 @@ public class Navigation {
      * @return {@code true} if the page loaded successfully and Cloudflare was bypassed (if present), otherwise {@code false}.
      */
     public boolean loadUrlAndBypassCFXDO(String url, Integer urlLoadTimeOutSeconds, Integer cfBypassTimeOutSeconds) {
-        return loadUrlAndBypassCF(url, urlLoadTimeOutSeconds, cfBypassTimeOutSeconds, driver.getXdo()::click);
+        return loadUrlAndBypassCF(url, urlLoadTimeOutSeconds, cfBypassTimeOutSeconds, tab.getDriver().getXdo()::click);
     }
 
     /**
@@ -137,7 +134,7 @@ public class Navigation {
      * @return {@code true} if the page loaded successfully and Cloudflare was bypassed (if present), otherwise {@code false}.
      */
     public boolean loadUrlAndBypassCFCDP(String url, Integer urlLoadTimeOutSeconds, Integer cfBypassTimeOutSeconds) {
-        return loadUrlAndBypassCF(url, urlLoadTimeOutSeconds, cfBypassTimeOutSeconds, driver.getInput()::emulateClick);
+        return loadUrlAndBypassCF(url, urlLoadTimeOutSeconds, cfBypassTimeOutSeconds, tab.getInput()::emulateClick);
     }
 
 }
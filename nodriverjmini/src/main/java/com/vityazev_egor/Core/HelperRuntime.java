@@ -0,0 +1,223 @@
+package com.vityazev_egor.Core;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.vityazev_egor.Protocol.Page;
+import com.vityazev_egor.Protocol.Runtime;
+
+/**
+ * Small library of element probes ({@code elementsJS/helpers.js}) installed into every document of a page with
+ * {@code Page.addScriptToEvaluateOnNewDocument}, so a probe is a call like {@code pos("css", "#login")} instead of
+ * the whole function text.
+ * <p>
+ * Built-in locators are passed as {@code Runtime.callFunctionOn} arguments of one shared function run on the helpers
+ * object, so V8 compiles the same short declaration for every locator and no script per locator is kept in the page.
+ * The handle of the helpers object is kept until its document is gone. Locators given only as JavaScript are
+ * evaluated as an expression each time.
+ * <p>
+ * The helpers keep references to the built-in DOM functions taken before the scripts of the page run, so pages that
+ * override {@code querySelector} or {@code JSON} don't break them. The global has a random name per session and is
+ * non-enumerable. If a document has no helpers (it was loaded before the install or the page made {@code window}
+ * non-extensible), they are evaluated into it, and if that fails too the given full script is run instead.
+ */
+public class HelperRuntime {
+    private static final String SOURCE_TEMPLATE = Shared.readResource("elementsJS/helpers.js").get()
+        .replace("REPLACE_TEXT_INDEX", Shared.readResource("elementsJS/textIndex.js").get());
+    private static final String MISSING = "__nd_missing__";
+    // общая функция для всех локаторов, this — объект помощников; у помощников не больше четырёх аргументов
+    private static final String DISPATCH = "function(f,a,b,c,d){return this[f](a,b,c,d)}";
+    private static final String OBJECT_GROUP = "nodriver-helpers";
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final SecureRandom random = new SecureRandom();
+
+    private final CustomLogger logger = new CustomLogger(HelperRuntime.class.getName());
+    private final WebSocketClient client;
+    private final String name;
+    private final String source;
+    private CompletableFuture<Void> installed;
+    // objectId объекта помощников в текущем документе, пустой если помощников в нём нет
+    private CompletableFuture<Optional<String>> helpersObject;
+
+    public HelperRuntime(WebSocketClient client) {
+        this.client = client;
+        byte[] suffix = new byte[4];
+        random.nextBytes(suffix);
+        this.name = "__nd" + HexFormat.of().formatHex(suffix);
+        this.source = SOURCE_TEMPLATE.replace("REPLACE_NAME", name);
+    }
+
+    /**
+     * @return client the helpers are installed through
+     */
+    public WebSocketClient getClient() {
+        return client;
+    }
+
+    /**
+     * @return name of the global object holding the helpers
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Registers the helpers for new documents of the page and installs them into the current one. Called once,
+     * later calls return the same future.
+     *
+     * @return future completed when Chrome accepted the script, failures are only logged
+     */
+    public synchronized CompletableFuture<Void> install() {
+        if (installed == null) {
+            installed = client.sendAsync(Page.addScriptToEvaluateOnNewDocument(source).runImmediately(true), 2)
+                .<Void>thenApply(result -> null)
+                .exceptionally(ex -> {
+                    logger.warning("Can't register element helpers for new documents: " + ex.getMessage());
+                    return null;
+                });
+        }
+        return installed;
+    }
+
+    /**
+     * Calls a helper with arguments passed by value, e.g. a built-in locator from
+     * {@link com.vityazev_egor.Core.WebElements.By#getHelperLocator()}.
+     *
+     * @param function Name of the helper: {@code find}, {@code exists}, {@code pos}, {@code size}, {@code clickable}
+     *                 or {@code readAll}
+     * @param args Arguments of the call, at most four strings, numbers or booleans
+     * @param fallbackJs Full script with the same result, run when the helpers can't be installed in the document
+     * @param timeOutSeconds Maximum time to wait for each command in seconds
+     * @return future with the scalar result of the helper
+     */
+    public CompletableFuture<Optional<String>> call(String function, List<?> args, String fallbackJs, Integer timeOutSeconds) {
+        List<Runtime.CallArgument> arguments = new ArrayList<>();
+        arguments.add(new Runtime.CallArgument(TextNode.valueOf(function), null, null));
+        args.forEach(arg -> arguments.add(new Runtime.CallArgument(JSON.valueToTree(arg), null, null)));
+        return install().thenCompose(ignored -> callShared(arguments, fallbackJs, timeOutSeconds, true));
+    }
+
+    private CompletableFuture<Optional<String>> callShared(List<Runtime.CallArgument> arguments, String fallbackJs, Integer timeOutSeconds, boolean retry) {
+        CompletableFuture<Optional<String>> used = helpersObject(timeOutSeconds);
+        return used
+            .thenCompose(objectId -> {
+                if (objectId.isEmpty()) return evaluate(fallbackJs, timeOutSeconds);
+                var command = Runtime.callFunctionOn(DISPATCH)
+                    .objectId(objectId.get())
+                    .arguments(arguments)
+                    .returnByValue(true);
+                return client.sendAsync(command, timeOutSeconds)
+                    .thenApply(result -> scalarResult(result.exceptionDetails(), result.result()));
+            })
+            .handle((result, error) -> {
+                if (error == null) return CompletableFuture.completedFuture(result);
+                forget(used);
+                Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                // страница перешла на другой документ, объект помощников исчез вместе со старым
+                if (retry && cause instanceof CDPException) {
+                    return callShared(arguments, fallbackJs, timeOutSeconds, false);
+                }
+                return CompletableFuture.<Optional<String>>failedFuture(cause);
+            })
+            .thenCompose(future -> future);
+    }
+
+    private synchronized CompletableFuture<Optional<String>> helpersObject(Integer timeOutSeconds) {
+        // документ без помощников не запоминается: после навигации они в нём появятся
+        boolean missing = helpersObject != null && helpersObject.isDone()
+            && (helpersObject.isCompletedExceptionally() || helpersObject.join().isEmpty());
+        if (helpersObject == null || missing) {
+            helpersObject = lookUpHelpers(timeOutSeconds);
+        }
+        return helpersObject;
+    }
+
+    private CompletableFuture<Optional<String>> lookUpHelpers(Integer timeOutSeconds) {
+        String lookup = String.format("typeof %1$s==='object'?%1$s:undefined", name);
+        return client.sendAsync(Runtime.evaluate(lookup).objectGroup(OBJECT_GROUP), timeOutSeconds)
+            .thenCompose(result -> {
+                Optional<String> objectId = objectId(result);
+                if (objectId.isPresent()) return CompletableFuture.completedFuture(objectId);
+                // документ загрузился раньше установки или скрипт не сработал в нём
+                return client.sendAsync(Runtime.evaluate(source + "\n" + lookup).objectGroup(OBJECT_GROUP), timeOutSeconds)
+                    .thenApply(HelperRuntime::objectId);
+            });
+    }
+
+    private synchronized void forget(CompletableFuture<Optional<String>> used) {
+        if (helpersObject == used) {
+            helpersObject = null;
+        }
+    }
+
+    /**
+     * Calls a helper on an element given as a JavaScript expression, for locators without a kind and value.
+     *
+     * @param function Name of the helper
+     * @param args JavaScript arguments of the call, see {@link com.vityazev_egor.Core.WebElements.By#getHelperArgs()}
+     * @param fallbackJs Full script with the same result, run when the helpers can't be installed in the document
+     * @param timeOutSeconds Maximum time to wait for each command in seconds
+     * @return future with the scalar result of the helper
+     */
+    public CompletableFuture<Optional<String>> call(String function, String args, String fallbackJs, Integer timeOutSeconds) {
+        String expression = String.format("typeof %1$s==='object'?%1$s.%2$s(%3$s):'%4$s'", name, function, args, MISSING);
+        return install()
+            .thenCompose(ignored -> evaluate(expression, timeOutSeconds))
+            .thenCompose(result -> {
+                if (!isMissing(result)) return CompletableFuture.completedFuture(result);
+                return client.sendAsync(Runtime.evaluate(source).returnByValue(true), timeOutSeconds)
+                    .thenCompose(evaluated -> isInstalled(evaluated)
+                        ? evaluate(expression, timeOutSeconds)
+                        : evaluate(fallbackJs, timeOutSeconds));
+            })
+            .thenApply(result -> isMissing(result) ? Optional.<String>empty() : result);
+    }
+
+    private CompletableFuture<Optional<String>> evaluate(String js, Integer timeOutSeconds) {
+        return client.sendAsync(Runtime.evaluate(js).returnByValue(true), timeOutSeconds)
+            .thenApply(result -> scalarResult(result.exceptionDetails(), result.result()));
+    }
+
+    /**
+     * Expression calling a helper on {@code this}, for functions run with {@code Runtime.callFunctionOn} on an element.
+     *
+     * @param function Name of the helper
+     * @return expression whose result is {@link #isMissing(Optional) missing} if the document has no helpers
+     */
+    public String elementCall(String function) {
+        return String.format("typeof %1$s==='object'?%1$s.%2$s(this):'%3$s'", name, function, MISSING);
+    }
+
+    /**
+     * @param result Result of a helper call
+     * @return whether the document the call was run in has no helpers
+     */
+    public static boolean isMissing(Optional<String> result) {
+        return result.isPresent() && MISSING.equals(result.get());
+    }
+
+    private static Optional<String> objectId(Runtime.EvaluateResult result) {
+        if (result.exceptionDetails() != null || result.result() == null) return Optional.empty();
+        return Optional.ofNullable(result.result().objectId());
+    }
+
+    private static Optional<String> scalarResult(Runtime.ExceptionDetails exceptionDetails, Runtime.RemoteObject result) {
+        if (exceptionDetails != null || result == null) return Optional.empty();
+        JsonNode value = result.value();
+        if (value == null || value.isNull() || value.isContainerNode()) return Optional.empty();
+        return Optional.of(value.asText());
+    }
+
+    private static boolean isInstalled(Runtime.EvaluateResult result) {
+        return result.exceptionDetails() == null && result.result() != null
+            && result.result().value() != null && result.result().value().asBoolean(false);
+    }
+}
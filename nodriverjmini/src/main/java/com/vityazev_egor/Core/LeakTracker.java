@@ -0,0 +1,94 @@
+package com.vityazev_egor.Core;
+
+import java.lang.ref.Cleaner;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Debug helper that reports resources which were garbage collected or still open at JVM exit without being closed.
+ * Enabled with {@code -Dnodriver.leakDetection=true}; the report contains the stack trace of the place
+ * the resource was created at. A leaked resource is cleaned up by the callback given to {@link #track}.
+ */
+public final class LeakTracker {
+    public static final boolean ENABLED = Boolean.getBoolean("nodriver.leakDetection");
+
+    private static final CustomLogger logger = new CustomLogger(LeakTracker.class.getName());
+    private static final Cleaner cleaner = Cleaner.create();
+    private static final Set<Tracked> open = ConcurrentHashMap.newKeySet();
+    private static final Tracked NOT_TRACKED = new Tracked(null, null);
+    private static final AtomicInteger leaked = new AtomicInteger();
+
+    static {
+        if (ENABLED) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> open.forEach(tracked ->
+                logger.error("Never closed: " + tracked.description, tracked.origin)), "nodriver-leak-report"));
+        }
+    }
+
+    private LeakTracker() {
+    }
+
+    /**
+     * Handle of a tracked resource, closed by the resource itself when it is released properly.
+     */
+    public static final class Tracked implements Runnable {
+        private final String description;
+        private final Runnable cleanup;
+        private final Exception origin;
+        private volatile boolean closed = false;
+        private Cleaner.Cleanable cleanable;
+
+        private Tracked(String description, Runnable cleanup) {
+            this.description = description;
+            this.cleanup = cleanup;
+            this.origin = description != null ? new Exception("Created at") : null;
+        }
+
+        /**
+         * Marks the resource as released.
+         */
+        public void close() {
+            if (cleanable == null) return;
+            closed = true;
+            cleanable.clean();
+        }
+
+        // вызывается Cleaner-ом после сборки ресурса или из close()
+        @Override
+        public void run() {
+            open.remove(this);
+            if (closed) return;
+            leaked.incrementAndGet();
+            logger.error("Leaked, garbage collected without being closed: " + description, origin);
+            try {
+                cleanup.run();
+            } catch (RuntimeException ex) {
+                logger.error("Can't clean up " + description, ex);
+            }
+        }
+    }
+
+    /**
+     * @return number of resources reported as garbage collected without being closed
+     */
+    public static int getLeakedCount() {
+        return leaked.get();
+    }
+
+    /**
+     * Starts tracking a resource if leak detection is enabled.
+     *
+     * @param resource Object whose collection means it leaked
+     * @param description Text for the report
+     * @param cleanup Releases what the resource held; must not reference the resource itself
+     * @return handle to close together with the resource
+     */
+    public static Tracked track(Object resource, String description, Runnable cleanup) {
+        if (!ENABLED) return NOT_TRACKED;
+        Tracked tracked = new Tracked(description, cleanup);
+        open.add(tracked);
+        tracked.cleanable = cleaner.register(resource, tracked);
+        return tracked;
+    }
+}
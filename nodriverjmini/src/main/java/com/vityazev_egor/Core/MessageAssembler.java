@@ -0,0 +1,89 @@
+package com.vityazev_egor.Core;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Joins partial text messages delivered by the websocket into {@link CDPMessage}s.
+ * <p>
+ * Small messages are collected in memory. Once a message grows over the spool threshold,
+ * everything received so far and all following parts are written to a temporary file,
+ * so a huge {@code outerHTML} or screenshot is never held as one more {@link String}.
+ * <p>
+ * Not thread safe: parts of one connection are delivered sequentially.
+ */
+class MessageAssembler {
+    private final int spoolThresholdChars;
+    private final StringBuilder buffer = new StringBuilder();
+    private Path spoolFile;
+    private Writer spoolWriter;
+
+    MessageAssembler(int spoolThresholdChars) {
+        this.spoolThresholdChars = spoolThresholdChars;
+    }
+
+    /**
+     * Appends a part of the current message.
+     *
+     * @param part Text of the part
+     * @param last Whether this is the final part of the message
+     * @return the complete message when {@code last} is {@code true} and the message is a valid CDP frame
+     * @throws IOException if the spool file can't be written
+     */
+    Optional<CDPMessage> append(CharSequence part, boolean last) throws IOException {
+        // самый частый случай - маленькое сообщение одним куском, не копируем его
+        if (last && spoolWriter == null && buffer.isEmpty() && part.length() <= spoolThresholdChars) {
+            return CDPMessage.parse(part.toString());
+        }
+
+        if (spoolWriter == null && buffer.length() + part.length() > spoolThresholdChars) {
+            spoolFile = Files.createTempFile("nodriver-cdp-", ".json");
+            spoolWriter = Files.newBufferedWriter(spoolFile, StandardCharsets.UTF_8);
+            spoolWriter.append(buffer);
+            buffer.setLength(0);
+            buffer.trimToSize();
+        }
+        if (spoolWriter != null) {
+            spoolWriter.append(part);
+        } else {
+            buffer.append(part);
+        }
+
+        if (!last) return Optional.empty();
+        return complete();
+    }
+
+    private Optional<CDPMessage> complete() throws IOException {
+        if (spoolWriter == null) {
+            String message = buffer.toString();
+            buffer.setLength(0);
+            return CDPMessage.parse(message);
+        }
+        Path file = spoolFile;
+        spoolWriter.close();
+        spoolWriter = null;
+        spoolFile = null;
+        return CDPMessage.parse(file);
+    }
+
+    /**
+     * Drops a partially received message, e.g. when the connection was closed.
+     */
+    void reset() {
+        buffer.setLength(0);
+        if (spoolWriter != null) {
+            try {
+                spoolWriter.close();
+                Files.deleteIfExists(spoolFile);
+            } catch (IOException ignored) {
+                // файл во временной папке, ничего страшного
+            }
+            spoolWriter = null;
+            spoolFile = null;
+        }
+    }
+}
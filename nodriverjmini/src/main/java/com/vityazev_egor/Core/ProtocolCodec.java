@@ -0,0 +1,111 @@
+package com.vityazev_egor.Core;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Streaming readers and writers used by the generated protocol classes.
+ * <p>
+ * Every reader expects the parser to be positioned on the value it reads and leaves it on the last token of that value,
+ * so generated decoders can call them from a plain {@code while (parser.nextToken() == FIELD_NAME)} loop.
+ * A JSON {@code null} or a value of an unexpected type is read as {@code null}.
+ */
+public final class ProtocolCodec {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private ProtocolCodec() {
+    }
+
+    /**
+     * Reads a value from the current position of the parser.
+     */
+    @FunctionalInterface
+    public interface Decoder<T> {
+        T read(JsonParser parser) throws IOException;
+    }
+
+    /**
+     * Writes a value with the generator.
+     */
+    @FunctionalInterface
+    public interface Encoder<T> {
+        void write(JsonGenerator generator, T value) throws IOException;
+    }
+
+    public static String readString(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_STRING) return parser.getText();
+        if (token != null && token.isScalarValue() && token != JsonToken.VALUE_NULL) return parser.getValueAsString();
+        parser.skipChildren();
+        return null;
+    }
+
+    public static Integer readInteger(JsonParser parser) throws IOException {
+        if (!parser.currentToken().isNumeric()) {
+            parser.skipChildren();
+            return null;
+        }
+        return parser.getValueAsInt();
+    }
+
+    public static Double readDouble(JsonParser parser) throws IOException {
+        if (!parser.currentToken().isNumeric()) {
+            parser.skipChildren();
+            return null;
+        }
+        return parser.getValueAsDouble();
+    }
+
+    public static Boolean readBoolean(JsonParser parser) throws IOException {
+        if (!parser.currentToken().isBoolean()) {
+            parser.skipChildren();
+            return null;
+        }
+        return parser.getBooleanValue();
+    }
+
+    /**
+     * Reads a value of the {@code any} or free-form {@code object} protocol type into a tree.
+     */
+    public static JsonNode readAny(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) return null;
+        return objectMapper.readTree(parser);
+    }
+
+    /**
+     * Reads a JSON array element by element.
+     *
+     * @return unmodifiable list, or {@code null} if the value is not an array
+     */
+    public static <T> List<T> readList(JsonParser parser, Decoder<T> decoder) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return null;
+        }
+        List<T> result = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            result.add(decoder.read(parser));
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    public static void writeAny(JsonGenerator generator, JsonNode value) throws IOException {
+        objectMapper.writeTree(generator, value);
+    }
+
+    public static <T> void writeList(JsonGenerator generator, List<T> values, Encoder<T> encoder) throws IOException {
+        generator.writeStartArray();
+        for (T value : values) {
+            encoder.write(generator, value);
+        }
+        generator.writeEndArray();
+    }
+}
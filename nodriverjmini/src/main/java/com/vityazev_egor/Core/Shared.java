@@ -6,6 +6,8 @@ import java.io.InputStreamReader;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+
 public class Shared {
     private static final CustomLogger logger = new CustomLogger(Shared.class.getName());
     public static void sleep(long milis){
@@ -31,4 +33,12 @@ public class Shared {
             return Optional.empty();
         }
     }
+
+    /**
+     * @param value Text to put into a script
+     * @return double-quoted JavaScript string literal
+     */
+    public static String jsString(String value){
+        return "\"" + new String(JsonStringEncoder.getInstance().quoteAsString(value)) + "\"";
+    }
 }
@@ -0,0 +1,71 @@
+package com.vityazev_egor.Core.Transport;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Channel that carries raw CDP messages between {@link com.vityazev_egor.Core.WebSocketClient} and Chrome.
+ * <p>
+ * The transport only moves text: ids, responses and events are handled by the client.
+ * Implementations:
+ * <ul>
+ *     <li>{@link TyrusTransport} - websocket through Tyrus, the default;</li>
+ *     <li>{@link JdkWebSocketTransport} - websocket through {@link java.net.http.WebSocket}, no extra container threads;</li>
+ *     <li>{@link PipeTransport} - Chrome's {@code --remote-debugging-pipe}, no port and no HTTP discovery.</li>
+ * </ul>
+ */
+public interface CDPTransport {
+
+    /**
+     * Receiver of everything that comes from Chrome.
+     */
+    interface Listener {
+        /**
+         * Called for every part of an incoming message, parts of one message are delivered in order.
+         *
+         * @param part Text of the part
+         * @param last Whether this is the final part of the message
+         */
+        void onMessagePart(CharSequence part, boolean last);
+
+        /**
+         * Called once when the channel was closed by either side.
+         *
+         * @param reason Human readable reason
+         */
+        void onClose(String reason);
+
+        /**
+         * Called when the channel reported an error. The channel may still be open.
+         *
+         * @param error The error
+         */
+        void onError(Throwable error);
+    }
+
+    /**
+     * Opens the channel and starts delivering incoming messages to the listener.
+     *
+     * @param listener Receiver of incoming messages
+     * @throws IOException if the channel can't be opened
+     */
+    void connect(Listener listener) throws IOException;
+
+    /**
+     * Writes one complete message. Messages are written in the order this method was called.
+     *
+     * @param message Raw JSON message
+     * @return future that is completed when the message was written, or exceptionally if it could not be
+     */
+    CompletableFuture<Void> send(String message);
+
+    /**
+     * @return {@code true} if the channel is connected and not closed
+     */
+    boolean isOpen();
+
+    /**
+     * Closes the channel. Calling this method more than once has no effect.
+     */
+    void close();
+}
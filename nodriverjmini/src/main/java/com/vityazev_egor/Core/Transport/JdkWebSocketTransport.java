@@ -0,0 +1,98 @@
+package com.vityazev_egor.Core.Transport;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Websocket transport on top of {@link java.net.http.WebSocket}. Needs no websocket container
+ * and has no frame size limit, parts of large messages are handed over as they arrive.
+ */
+public class JdkWebSocketTransport implements CDPTransport {
+    // один клиент на все соединения: у каждого HttpClient свой поток селектора, и он живёт, пока клиент не соберут
+    private static final HttpClient HTTP = HttpClient.newHttpClient();
+
+    private final String url;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private volatile WebSocket webSocket;
+    private Listener listener;
+    // WebSocket не допускает параллельных отправок, поэтому каждая следующая ждёт предыдущую
+    private CompletableFuture<?> lastSend = CompletableFuture.completedFuture(null);
+
+    /**
+     * @param url Websocket debugger url, e.g. {@code ws://localhost:9222/devtools/page/<id>}
+     */
+    public JdkWebSocketTransport(String url) {
+        this.url = url;
+    }
+
+    @Override
+    public void connect(Listener listener) throws IOException {
+        this.listener = listener;
+        try {
+            webSocket = HTTP
+                .newWebSocketBuilder()
+                .buildAsync(URI.create(url), new Receiver())
+                .join();
+        } catch (CompletionException | IllegalArgumentException ex) {
+            throw new IOException("Can't connect to " + url, ex.getCause() != null ? ex.getCause() : ex);
+        }
+    }
+
+    private class Receiver implements WebSocket.Listener {
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            listener.onMessagePart(data, last);
+            webSocket.request(1);
+            return null;
+        }
+
+        @Override
+        public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+            if (closed.compareAndSet(false, true)) {
+                listener.onClose(statusCode + " " + reason);
+            }
+            return null;
+        }
+
+        @Override
+        public void onError(WebSocket webSocket, Throwable error) {
+            listener.onError(error);
+            if (closed.compareAndSet(false, true)) {
+                listener.onClose(String.valueOf(error.getMessage()));
+            }
+        }
+    }
+
+    @Override
+    public synchronized CompletableFuture<Void> send(String message) {
+        if (!isOpen()) {
+            return CompletableFuture.failedFuture(new IOException("Websocket is not open"));
+        }
+        CompletableFuture<Void> sent = lastSend
+            .handle((ignored, error) -> null)
+            .thenCompose(ignored -> webSocket.sendText(message, true))
+            .thenApply(ignored -> null);
+        lastSend = sent;
+        return sent;
+    }
+
+    @Override
+    public boolean isOpen() {
+        WebSocket current = webSocket;
+        return current != null && !closed.get() && !current.isOutputClosed();
+    }
+
+    @Override
+    public void close() {
+        WebSocket current = webSocket;
+        if (current == null || !closed.compareAndSet(false, true)) return;
+        current.sendClose(WebSocket.NORMAL_CLOSURE, "").whenComplete((ignored, error) -> current.abort());
+        listener.onClose("Closed by client");
+    }
+}
@@ -0,0 +1,261 @@
+package com.vityazev_egor.Core.Transport;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import com.vityazev_egor.Core.CustomLogger;
+
+/**
+ * Transport over Chrome's {@code --remote-debugging-pipe}: Chrome reads commands from fd 3 and writes
+ * responses and events to fd 4, every message is terminated with {@code \0}.
+ * <p>
+ * Java can't hand extra file descriptors to a child process, so the pipes are two named FIFOs
+ * and Chrome is started through {@code sh}, which attaches them as fd 3 and 4 (see {@link #wrapCommand(List)}).
+ * The pipe connects to the browser target, pages are controlled through flattened sessions.
+ * Linux and macOS only.
+ *
+ * <pre>{@code
+ * PipeTransport transport = PipeTransport.create();
+ * Process chrome = new ProcessBuilder(transport.wrapCommand(chromeCommand)).start();
+ * WebSocketClient client = new WebSocketClient(transport);
+ * }</pre>
+ */
+public class PipeTransport implements CDPTransport {
+    private static final int READ_BUFFER_CHARS = 64 * 1024;
+    private static final int CONNECT_TIMEOUT_SECONDS = 30;
+    private static final byte[] MESSAGE_END = {0};
+
+    private final CustomLogger logger = new CustomLogger(PipeTransport.class.getName());
+    private final Path directory;
+    private final Path toChrome;
+    private final Path fromChrome;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cdp-pipe-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile boolean connected = false;
+    private OutputStream output;
+    private FileInputStream input;
+    private Listener listener;
+
+    private PipeTransport(Path directory) {
+        this.directory = directory;
+        this.toChrome = directory.resolve("to-chrome");
+        this.fromChrome = directory.resolve("from-chrome");
+    }
+
+    /**
+     * Creates a pair of FIFOs in a new temporary directory.
+     *
+     * @return transport ready to wrap the Chrome command
+     * @throws IOException if the FIFOs can't be created
+     */
+    public static PipeTransport create() throws IOException {
+        PipeTransport transport = new PipeTransport(Files.createTempDirectory("nodriver-pipe-"));
+        try {
+            Process mkfifo = new ProcessBuilder("mkfifo", "-m", "600", transport.toChrome.toString(), transport.fromChrome.toString())
+                .redirectErrorStream(true)
+                .start();
+            if (!mkfifo.waitFor(10, TimeUnit.SECONDS) || mkfifo.exitValue() != 0) {
+                throw new IOException("mkfifo failed: " + new String(mkfifo.getInputStream().readAllBytes(), StandardCharsets.UTF_8));
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            transport.deleteFifos();
+            throw new IOException("Interrupted while creating pipes", ex);
+        } catch (IOException ex) {
+            transport.deleteFifos();
+            throw ex;
+        }
+        return transport;
+    }
+
+    /**
+     * Wraps the Chrome command so that the FIFOs become its fd 3 and fd 4.
+     * {@code --remote-debugging-pipe} is added to the command.
+     *
+     * @param chromeCommand Chrome executable followed by its arguments
+     * @return command to pass to {@link ProcessBuilder}
+     */
+    public List<String> wrapCommand(List<String> chromeCommand) {
+        List<String> command = new ArrayList<>();
+        command.add("sh");
+        command.add("-c");
+        // пути передаются позиционными аргументами, чтобы не возиться с экранированием
+        command.add("in=$1; out=$2; shift 2; exec \"$@\" 3<\"$in\" 4>\"$out\"");
+        command.add("sh");
+        command.add(toChrome.toString());
+        command.add(fromChrome.toString());
+        command.addAll(chromeCommand);
+        command.add("--remote-debugging-pipe");
+        return command;
+    }
+
+    /**
+     * Opens the FIFOs. Blocks until Chrome opened its ends, at most 30 seconds.
+     */
+    @Override
+    public void connect(Listener listener) throws IOException {
+        this.listener = listener;
+        // "rw" не блокируется на FIFO, а Chrome всё равно получит EOF только когда мы закроем канал
+        RandomAccessFile commands = new RandomAccessFile(toChrome.toFile(), "rw");
+        output = new FileOutputStream(commands.getFD());
+
+        // открытие на чтение ждёт, пока Chrome откроет fd 4
+        CompletableFuture<FileInputStream> opening = CompletableFuture.supplyAsync(() -> {
+            try {
+                return new FileInputStream(fromChrome.toFile());
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        });
+        try {
+            input = opening.get(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (TimeoutException ex) {
+            unblockOpening(opening);
+            commands.close();
+            throw new IOException("Chrome did not open the debugging pipe in " + CONNECT_TIMEOUT_SECONDS + " seconds");
+        } catch (ExecutionException ex) {
+            commands.close();
+            throw new IOException("Can't open the debugging pipe", ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            unblockOpening(opening);
+            commands.close();
+            throw new IOException("Interrupted while opening the debugging pipe", ex);
+        }
+        connected = true;
+
+        Thread reader = new Thread(this::readLoop, "cdp-pipe-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Releases a thread blocked in opening the read end by opening the write end ourselves.
+     */
+    private void unblockOpening(CompletableFuture<FileInputStream> opening) {
+        RandomAccessFile writeEnd = null;
+        try {
+            // открытие конца на запись само по себе отпускает поток, ждущий в open() на чтение
+            writeEnd = new RandomAccessFile(fromChrome.toFile(), "rw");
+            opening.thenAccept(stream -> {
+                try {
+                    stream.close();
+                } catch (IOException ignoredClose) {
+                    // поток никому не нужен
+                }
+            });
+        } catch (IOException ex) {
+            logger.warning("Can't release pipe opening: " + ex.getMessage());
+        } finally {
+            if (writeEnd != null) {
+                try {
+                    writeEnd.close();
+                } catch (IOException ignoredClose) {
+                    // конец на запись нужен был только для открытия
+                }
+            }
+        }
+    }
+
+    private void readLoop() {
+        char[] buffer = new char[READ_BUFFER_CHARS];
+        try (Reader reader = new InputStreamReader(input, StandardCharsets.UTF_8)) {
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                int start = 0;
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\0') {
+                        listener.onMessagePart(new String(buffer, start, i - start), true);
+                        start = i + 1;
+                    }
+                }
+                // хвост без \0 - начало следующего сообщения, отдаём частью
+                if (start < read) {
+                    listener.onMessagePart(new String(buffer, start, read - start), false);
+                }
+            }
+            shutdown("Chrome closed the debugging pipe");
+        } catch (IOException ex) {
+            if (!closed.get()) {
+                listener.onError(ex);
+            }
+            shutdown("Debugging pipe failed: " + ex.getMessage());
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> send(String message) {
+        if (!isOpen()) {
+            return CompletableFuture.failedFuture(new IOException("Debugging pipe is not open"));
+        }
+        try {
+            return CompletableFuture.runAsync(() -> {
+                try {
+                    output.write(message.getBytes(StandardCharsets.UTF_8));
+                    output.write(MESSAGE_END);
+                    output.flush();
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }, writer);
+        } catch (RejectedExecutionException ex) {
+            return CompletableFuture.failedFuture(new IOException("Debugging pipe is closed"));
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return connected && !closed.get();
+    }
+
+    @Override
+    public void close() {
+        shutdown("Closed by client");
+    }
+
+    private void shutdown(String reason) {
+        if (!closed.compareAndSet(false, true)) return;
+        writer.shutdown();
+        try {
+            if (output != null) output.close();
+        } catch (IOException ex) {
+            logger.warning("Can't close pipe: " + ex.getMessage());
+        }
+        deleteFifos();
+        if (listener != null) listener.onClose(reason);
+    }
+
+    private void deleteFifos() {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException ex) {
+            logger.warning("Can't delete pipe directory: " + ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.vityazev_egor.Core.Transport;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+
+import org.glassfish.tyrus.client.ClientManager;
+import org.glassfish.tyrus.client.ClientProperties;
+
+import com.vityazev_egor.Core.CustomLogger;
+
+import jakarta.websocket.ClientEndpoint;
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.OnClose;
+import jakarta.websocket.OnError;
+import jakarta.websocket.OnMessage;
+import jakarta.websocket.OnOpen;
+import jakarta.websocket.Session;
+
+/**
+ * Websocket transport on top of the Tyrus client container.
+ * Every transport has its own container, it is shut down with the connection so its threads don't outlive it.
+ */
+@ClientEndpoint
+public class TyrusTransport implements CDPTransport {
+    // лимит одного websocket фрейма, Chrome отправляет каждое сообщение одним фреймом
+    private static final int MAX_FRAME_BYTES = 512 * 1024 * 1024;
+
+    private final CustomLogger logger = new CustomLogger(TyrusTransport.class.getName());
+    private final String url;
+    private volatile Session session;
+    private volatile Listener listener;
+    private ClientManager container;
+
+    /**
+     * @param url Websocket debugger url, e.g. {@code ws://localhost:9222/devtools/page/<id>}
+     */
+    public TyrusTransport(String url) {
+        this.url = url;
+    }
+
+    @Override
+    public void connect(Listener listener) throws IOException {
+        this.listener = listener;
+        container = ClientManager.createClient();
+        // по умолчанию Tyrus рвёт соединение на фреймах больше 4 МБ
+        container.getProperties().put(ClientProperties.INCOMING_BUFFER_SIZE, MAX_FRAME_BYTES);
+        try {
+            session = container.connectToServer(this, new URI(url));
+        } catch (Exception ex) {
+            container.shutdown();
+            throw new IOException("Can't connect to " + url, ex);
+        }
+    }
+
+    @OnOpen
+    public void onOpen(Session session) {
+        this.session = session;
+        logger.info("Connected to the server");
+    }
+
+    /**
+     * Receives messages part by part, so there is no upper limit for the size of a whole message.
+     *
+     * @param part Part of the message
+     * @param last Whether this is the final part of the message
+     */
+    @OnMessage
+    public void onMessage(String part, boolean last) {
+        listener.onMessagePart(part, last);
+    }
+
+    @OnError
+    public void onError(Session session, Throwable throwable) {
+        listener.onError(throwable);
+    }
+
+    @OnClose
+    public void onClose(Session session, CloseReason closeReason) {
+        listener.onClose(String.valueOf(closeReason));
+        // остановка контейнера из его же потока может зависнуть
+        CompletableFuture.runAsync(this::shutdownContainer);
+    }
+
+    @Override
+    public CompletableFuture<Void> send(String message) {
+        CompletableFuture<Void> sent = new CompletableFuture<>();
+        Session current = session;
+        if (current == null || !current.isOpen()) {
+            sent.completeExceptionally(new IOException("Websocket is not open"));
+            return sent;
+        }
+        current.getAsyncRemote().sendText(message, sendResult -> {
+            if (sendResult.isOK()) {
+                sent.complete(null);
+            } else {
+                sent.completeExceptionally(sendResult.getException());
+            }
+        });
+        return sent;
+    }
+
+    @Override
+    public boolean isOpen() {
+        Session current = session;
+        return current != null && current.isOpen();
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (session != null && session.isOpen()) {
+                session.close();
+            }
+        } catch (IOException e) {
+            logger.error("Can't close session", e);
+        }
+        shutdownContainer();
+    }
+
+    private synchronized void shutdownContainer() {
+        if (container != null) {
+            container.shutdown();
+            container = null;
+        }
+    }
+}
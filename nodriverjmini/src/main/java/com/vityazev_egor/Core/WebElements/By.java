@@ -1,13 +1,86 @@
 package com.vityazev_egor.Core.WebElements;
 
+import java.util.List;
+import java.util.Optional;
+
+import com.vityazev_egor.Core.Shared;
+
 public abstract class By {
+    // линейный поиск по тексту, общий с внедрёнными помощниками
+    private static final String TEXT_INDEX = Shared.readResource("elementsJS/textIndex.js").get();
+
     public abstract String getJavaScript();
     public abstract String getMultiJavaScript();
 
+    /**
+     * Kind and value of a built-in locator, e.g. {@code ["css", "#login"]}, passed by value to the injected element
+     * helpers so they look the element up with the original DOM functions, see {@link com.vityazev_egor.Core.HelperRuntime}.
+     *
+     * @return kind and value, empty for locators given only as JavaScript
+     */
+    public Optional<List<String>> getHelperLocator() {
+        String[] locator = helperLocator();
+        return locator == null ? Optional.empty() : Optional.of(List.of(locator[0], locator[1]));
+    }
+
+    /**
+     * Arguments of a call to the injected element helpers as JavaScript, for locators without
+     * {@link #getHelperLocator()}: the element expression of {@link #getJavaScript()}.
+     *
+     * @return JavaScript arguments
+     */
+    public String getHelperArgs() {
+        String[] locator = helperLocator();
+        return locator == null ? getJavaScript() : helperArgs(locator[0], locator[1]);
+    }
+
+    /**
+     * Same as {@link #getHelperArgs()} for all matches, by default the collection of {@link #getMultiJavaScript()}.
+     *
+     * @return JavaScript arguments
+     */
+    public String getMultiHelperArgs() {
+        String[] locator = helperLocator();
+        return locator == null ? getMultiJavaScript() : helperArgs(locator[0], locator[1]);
+    }
+
+    /**
+     * @param index Index of the match
+     * @return JavaScript arguments selecting one of the matches
+     */
+    public String getHelperArgs(int index) {
+        return getMultiHelperArgs() + "," + index;
+    }
+
+    /**
+     * Kind and value of a built-in locator for the helpers, {@code null} for locators given only as JavaScript.
+     */
+    protected String[] helperLocator() {
+        return null;
+    }
+
     public String replaceQuotes(String input){
         return input.replace("'", "\"");
     }
 
+    /**
+     * Script finding elements whose trimmed text equals or contains the given one, without their ancestors,
+     * in one pass over the document.
+     *
+     * @param text Text to look for
+     * @param exact Whether the text must be equal rather than contained
+     * @param first Whether only the first element is needed
+     * @return expression of the first element or of the array of all of them
+     */
+    protected static String textSearchJavaScript(String text, boolean exact, boolean first) {
+        return String.format("(function(t){var r=t.find(t.build(document),%s,%b,%b);return %s;})(%s)",
+            Shared.jsString(text), exact, first, first ? "r[0]" : "r", TEXT_INDEX);
+    }
+
+    protected static String helperArgs(String kind, String value) {
+        return "'" + kind + "'," + Shared.jsString(value);
+    }
+
     public static By id(String id) {
         return new ById(id);
     }
@@ -33,12 +106,19 @@ public abstract class By {
     }
 
     private static class ById extends By {
+        private final String id;
         private final String elementJs;
 
         public ById(String id) {
+            this.id = id;
             this.elementJs = String.format("document.getElementById('%s')", id);
         }
 
+        @Override
+        protected String[] helperLocator() {
+            return new String[]{"id", id};
+        }
+
         @Override
         public String getJavaScript() {
             return elementJs;
@@ -57,6 +137,11 @@ public abstract class By {
             this.query = selector;
         }
 
+        @Override
+        protected String[] helperLocator() {
+            return new String[]{"css", query};
+        }
+
         @Override
         public String getJavaScript() {
             return String.format("document.querySelector('%s')", replaceQuotes(query));
@@ -75,6 +160,11 @@ public abstract class By {
             this.className = className;
         }
 
+        @Override
+        protected String[] helperLocator() {
+            return new String[]{"class", className};
+        }
+
         @Override
         public String getJavaScript() {
             return String.format("document.getElementsByClassName('%s')[0]", replaceQuotes(className));
@@ -93,6 +183,11 @@ public abstract class By {
             this.name = name;
         }
 
+        @Override
+        protected String[] helperLocator() {
+            return new String[]{"name", name};
+        }
+
         @Override
         public String getJavaScript() {
             return String.format("document.getElementsByName('%s')[0]", replaceQuotes(name));
@@ -111,27 +206,19 @@ public abstract class By {
             this.text = text;
         }
 
+        @Override
+        protected String[] helperLocator() {
+            return new String[]{"text", text};
+        }
+
         @Override
         public String getJavaScript() {
-            return String.format(
-                "(function(){var target='%s';var elements=Array.from(document.querySelectorAll('body *'));"
-                    + "var matches=elements.filter(function(el){var t=el.textContent;if(t==null){return false;}t=t.trim();"
-                    + "return t===target;});"
-                    + "var result=matches.filter(function(el){return !matches.some(function(other){return other!==el && el.contains(other);});});"
-                    + "return result[0];})()",
-                replaceQuotes(text)
-            );
+            return textSearchJavaScript(text, true, true);
         }
 
         @Override
         public String getMultiJavaScript() {
-            return String.format(
-                "(function(){var target='%s';var elements=Array.from(document.querySelectorAll('body *'));"
-                    + "var matches=elements.filter(function(el){var t=el.textContent;if(t==null){return false;}t=t.trim();"
-                    + "return t===target;});"
-                    + "return matches.filter(function(el){return !matches.some(function(other){return other!==el && el.contains(other);});});})()",
-                replaceQuotes(text)
-            );
+            return textSearchJavaScript(text, true, false);
         }
     }
 
@@ -142,27 +229,19 @@ public abstract class By {
             this.text = text;
         }
 
+        @Override
+        protected String[] helperLocator() {
+            return new String[]{"textContains", text};
+        }
+
         @Override
         public String getJavaScript() {
-            return String.format(
-                "(function(){var target='%s';var elements=Array.from(document.querySelectorAll('body *'));"
-                    + "var matches=elements.filter(function(el){var t=el.textContent;if(t==null){return false;}t=t.trim();"
-                    + "return t.indexOf(target)!==-1;});"
-                    + "var result=matches.filter(function(el){return !matches.some(function(other){return other!==el && el.contains(other);});});"
-                    + "return result[0];})()",
-                replaceQuotes(text)
-            );
+            return textSearchJavaScript(text, false, true);
         }
 
         @Override
         public String getMultiJavaScript() {
-            return String.format(
-                "(function(){var target='%s';var elements=Array.from(document.querySelectorAll('body *'));"
-                    + "var matches=elements.filter(function(el){var t=el.textContent;if(t==null){return false;}t=t.trim();"
-                    + "return t.indexOf(target)!==-1;});"
-                    + "return matches.filter(function(el){return !matches.some(function(other){return other!==el && el.contains(other);});});})()",
-                replaceQuotes(text)
-            );
+            return textSearchJavaScript(text, false, false);
         }
     }
 }
@@ -1,54 +1,113 @@
 package com.vityazev_egor.Core.WebElements;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
+import com.vityazev_egor.Core.CDPException;
 import com.vityazev_egor.Core.CustomLogger;
+import com.vityazev_egor.Core.HelperRuntime;
 import com.vityazev_egor.Core.LambdaWaitTask;
 
 import java.awt.*;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.vityazev_egor.NoDriver;
+import com.fasterxml.jackson.databind.node.BooleanNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.vityazev_egor.Tab;
 import com.vityazev_egor.Core.Shared;
+import com.vityazev_egor.Protocol.Runtime;
 
+/**
+ * Element of a page found by a {@link By} locator or a JavaScript expression.
+ * <p>
+ * The element is looked up once and kept as a remote object handle ({@code objectId}) in the {@link #OBJECT_GROUP}
+ * object group, later calls run functions on it with {@code Runtime.callFunctionOn} instead of repeating the search.
+ * A handle whose node was removed from the document, no longer matches its built-in locator (e.g. its text or class
+ * changed) or whose page navigated away is stale: it is dropped and the element is looked up again. While the element doesn't exist nothing is cached, so {@link #waitToAppear} keeps searching.
+ * Handles are freed with {@link #release()} or all at once with {@link Tab#releaseElements()}.
+ */
 public class WebElement {
+    /**
+     * Object group the handles of elements are created in.
+     */
+    public static final String OBJECT_GROUP = "nodriver-elements";
+    // ответ функции, вызванной на узле, который уже удалён из документа
+    private static final String STALE = "__nd_stale__";
+
+    // шаблоны читаются один раз, а не при создании каждого элемента
+    private static final String GET_POSITION_TEMPLATE = Shared.readResource("elementsJS/getPosition.js").get();
+    private static final String GET_SIZE_TEMPLATE = Shared.readResource("elementsJS/getSize.js").get();
+    private static final String IS_CLICKABLE_TEMPLATE = Shared.readResource("elementsJS/isElementClickable.js").get();
+    private static final String IS_EXISTS_TEMPLATE = Shared.readResource("elementsJS/isElementExists.js").get();
+
     private final ObjectMapper mapper = new ObjectMapper();
     private final CustomLogger logger = new CustomLogger(WebElement.class.getName());
 
     private String getPositionJs;
     private String isClickableJs;
-    private String getContentJs;
-    private String getTextJs;
     private String getSizeJs;
     private String isExistsJs;
-    private String getValueJs;
-    private String removeJs;
 
     private final String elementJs;
-    private final NoDriver driver;
+    // аргументы вызова внедрённых помощников, см. HelperRuntime; локатор передаётся значениями, если он встроенный
+    private final String helperArgs;
+    private final List<Object> helperLocator;
+    private final Tab tab;
+    // objectId найденного элемента, пустой пока элемент не найден
+    private CompletableFuture<Optional<String>> handle;
 
-    public WebElement(NoDriver driver, By by){
+    public WebElement(Tab tab, By by){
         this.elementJs = by.getJavaScript();
-        this.driver = driver;
+        this.helperArgs = by.getHelperArgs();
+        this.helperLocator = by.getHelperLocator().<List<Object>>map(List::copyOf).orElse(null);
+        this.tab = tab;
         initScripts();
     }
 
-    public WebElement(NoDriver driver, String elementJs){
+    public WebElement(Tab tab, String elementJs){
         this.elementJs = elementJs;
-        this.driver = driver;
+        this.helperArgs = elementJs;
+        this.helperLocator = null;
+        this.tab = tab;
+        initScripts();
+    }
+
+    /**
+     * Element found by {@link Tab#findElements(By)}, already resolved to a handle.
+     *
+     * @param tab Tab of the element
+     * @param by Locator the element was found with
+     * @param index Index of the element among the matches, used to look it up again once the handle is stale
+     * @param objectId Handle of the element in {@link #OBJECT_GROUP}
+     */
+    public WebElement(Tab tab, By by, int index, String objectId){
+        this.elementJs = indexedJavaScript(by, index);
+        this.helperArgs = by.getHelperArgs(index);
+        this.helperLocator = by.getHelperLocator().map(locator -> List.<Object>of(locator.get(0), locator.get(1), index)).orElse(null);
+        this.tab = tab;
+        this.handle = CompletableFuture.completedFuture(Optional.of(objectId));
         initScripts();
     }
 
+    private static String indexedJavaScript(By by, int index){
+        try {
+            return String.format("%s[%d]", by.getMultiJavaScript(), index);
+        } catch (UnsupportedOperationException ex) {
+            // у id не бывает нескольких совпадений
+            return by.getJavaScript();
+        }
+    }
+
     private void initScripts(){
-        this.getPositionJs = Shared.readResource("elementsJS/getPosition.js").get().replace("REPLACE_ME", elementJs);
-        this.getSizeJs = Shared.readResource("elementsJS/getSize.js").get().replace("REPLACE_ME", elementJs);
-        this.isClickableJs = Shared.readResource("elementsJS/isElementClickable.js").get().replace("REPLACE_ME", elementJs);
-        this.isExistsJs = Shared.readResource("elementsJS/isElementExists.js").get().replace("REPLACE_ME", elementJs);
-        this.getContentJs = elementJs + ".innerHTML";
-        this.getTextJs = elementJs + ".innerText";
-        this.getValueJs = elementJs + ".value";
-        this.removeJs = elementJs + ".remove();";
+        this.getPositionJs = GET_POSITION_TEMPLATE.replace("REPLACE_ME", elementJs);
+        this.getSizeJs = GET_SIZE_TEMPLATE.replace("REPLACE_ME", elementJs);
+        this.isClickableJs = IS_CLICKABLE_TEMPLATE.replace("REPLACE_ME", elementJs);
+        this.isExistsJs = IS_EXISTS_TEMPLATE.replace("REPLACE_ME", elementJs);
     }
 
     /**
@@ -57,14 +116,22 @@ public class WebElement {
      * @return {@code true} if the element exists, {@code false} otherwise.
      */
     public boolean isExists(){
-        var result = driver.executeJSAndGetResult(isExistsJs);
-        return result.map((jsResult) ->{
+        return isExistsAsync().join();
+    }
+
+    /**
+     * Asynchronous version of {@link #isExists()}.
+     *
+     * @return A future that is completed with {@code true} if the element exists.
+     */
+    public CompletableFuture<Boolean> isExistsAsync(){
+        return probe("exists", isExistsJs).thenApply(result -> result.map((jsResult) ->{
             try {
                 return Boolean.parseBoolean(jsResult);
             } catch (Exception e) {
                 return false;
             }
-        }).orElse(false);
+        }).orElse(false));
     }
 
     /**
@@ -74,23 +141,17 @@ public class WebElement {
      * @return An {@link Optional} containing the {@link Point} if found, or an empty {@link Optional} if not found.
      */
     public Optional<Point> getPosition(){
-        var result = driver.executeJSAndGetResult(getPositionJs);
-        if (result.isEmpty()) return Optional.empty();
-
-        String jsonResponse = result.get();
-        if (jsonResponse.contains("not found")) return Optional.empty();
-
-        try{
-            JsonNode tree = mapper.readTree(jsonResponse);
-            String xRaw = tree.get("x").asText();
-            String yRaw = tree.get("y").asText();
+        return getPositionAsync().join();
+    }
 
-            return Optional.of(new Point(Integer.parseInt(xRaw), Integer.parseInt(yRaw)));
-        }
-        catch (Exception ex){
-            logger.error("Can't get position of element", ex);
-            return Optional.empty();
-        }
+    /**
+     * Asynchronous version of {@link #getPosition()}.
+     *
+     * @return A future with the {@link Point} of the element center, or an empty {@link Optional} if not found.
+     */
+    public CompletableFuture<Optional<Point>> getPositionAsync(){
+        return probe("pos", getPositionJs)
+            .thenApply(result -> parseXY(result, "Can't get position of element").map(xy -> new Point(xy[0], xy[1])));
     }
 
     /**
@@ -99,7 +160,145 @@ public class WebElement {
      * @return An {@link Optional} containing the {@link Dimension} if found, or an empty {@link Optional} if not found.
      */
     public Optional<Dimension> getSize(){
-        var result = driver.executeJSAndGetResult(getSizeJs);
+        return getSizeAsync().join();
+    }
+
+    /**
+     * Asynchronous version of {@link #getSize()}.
+     *
+     * @return A future with the {@link Dimension} of the element, or an empty {@link Optional} if not found.
+     */
+    public CompletableFuture<Optional<Dimension>> getSizeAsync(){
+        return probe("size", getSizeJs)
+            .thenApply(result -> parseXY(result, "Can't get size of element").map(xy -> new Dimension(xy[0], xy[1])));
+    }
+
+    /**
+     * Runs a probe of the injected helpers on the element handle. If the document has no helpers the probe is run
+     * by locator, with the full script as the last resort.
+     */
+    private CompletableFuture<Optional<String>> probe(String function, String fallbackJs){
+        HelperRuntime helpers = tab.getHelpers();
+        return callOn("return " + helpers.elementCall(function), List.of())
+            .thenCompose(result -> {
+                if (!HelperRuntime.isMissing(result)) return CompletableFuture.completedFuture(result);
+                return helperLocator != null
+                    ? helpers.call(function, helperLocator, fallbackJs, 2)
+                    : helpers.call(function, helperArgs, fallbackJs, 2);
+            })
+            .exceptionally(ex -> {
+                logger.error("Can't call element helper " + function + ": " + ex.getMessage());
+                return Optional.empty();
+            });
+    }
+
+    /**
+     * Runs a function with the element as {@code this}, finding the element again if the handle is stale.
+     *
+     * @param body Body of the function, the argument is available as {@code a}
+     * @param args Arguments passed by value
+     * @return future with the scalar or JSON result, empty if the element doesn't exist
+     */
+    private CompletableFuture<Optional<String>> callOn(String body, List<JsonNode> args){
+        return callOn(body, args, true).exceptionally(ex -> {
+            logger.error("Can't call function on element " + elementJs + ": " + ex.getMessage());
+            return Optional.empty();
+        });
+    }
+
+    private CompletableFuture<Optional<String>> callOn(String body, List<JsonNode> args, boolean retry){
+        CompletableFuture<Optional<String>> used = handle();
+        // узел, который больше не подходит под встроенный локатор, тоже устарел; без помощников проверяется только isConnected
+        String declaration = String.format(
+            "function(k,v,a){if(!this.isConnected||(k!=null&&typeof %1$s==='object'&&!%1$s.matches(this,k,v)))return '%2$s';%3$s}",
+            tab.getHelpers().getName(), STALE, body);
+        var arguments = new ArrayList<Runtime.CallArgument>();
+        arguments.add(locatorArgument(0));
+        arguments.add(locatorArgument(1));
+        args.forEach(arg -> arguments.add(new Runtime.CallArgument(arg, null, null)));
+        return used
+            .thenCompose(objectId -> {
+                if (objectId.isEmpty()) return CompletableFuture.completedFuture(Optional.<String>empty());
+                var command = Runtime.callFunctionOn(declaration)
+                    .objectId(objectId.get())
+                    .returnByValue(true)
+                    .arguments(arguments);
+                return tab.getSocketClient().sendAsync(command, 2).thenApply(WebElement::callResult);
+            })
+            .handle((result, error) -> {
+                Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                // узел удалён из документа или страница перешла на другой документ
+                boolean stale = error == null ? result.map(STALE::equals).orElse(false) : cause instanceof CDPException;
+                if (!stale) {
+                    return error == null ? CompletableFuture.completedFuture(result) : CompletableFuture.<Optional<String>>failedFuture(cause);
+                }
+                forget(used, error == null);
+                return retry ? callOn(body, args, false) : CompletableFuture.completedFuture(Optional.<String>empty());
+            })
+            .thenCompose(future -> future);
+    }
+
+    private Runtime.CallArgument locatorArgument(int part){
+        JsonNode value = helperLocator != null ? TextNode.valueOf(helperLocator.get(part).toString()) : NullNode.getInstance();
+        return new Runtime.CallArgument(value, null, null);
+    }
+
+    private synchronized CompletableFuture<Optional<String>> handle(){
+        // ненайденный элемент не кешируется: он может появиться позже
+        boolean notFound = handle != null && handle.isDone() && (handle.isCompletedExceptionally() || handle.join().isEmpty());
+        if (handle == null || notFound) {
+            handle = resolve();
+        }
+        return handle;
+    }
+
+    private CompletableFuture<Optional<String>> resolve(){
+        HelperRuntime helpers = tab.getHelpers();
+        String expression = String.format("typeof %1$s==='object'?%1$s.find(%2$s):(%3$s)", helpers.getName(), helperArgs, elementJs);
+        return helpers.install()
+            .thenCompose(ignored -> helpers.getClient().sendAsync(Runtime.evaluate(expression).objectGroup(OBJECT_GROUP), 2))
+            .thenApply(result -> result.exceptionDetails() == null && result.result() != null
+                ? Optional.ofNullable(result.result().objectId())
+                : Optional.<String>empty());
+    }
+
+    /**
+     * Drops the handle, the object is released in Chrome only if it still exists there.
+     */
+    private void forget(CompletableFuture<Optional<String>> used, boolean releaseObject){
+        synchronized (this) {
+            if (handle != used) return;
+            handle = null;
+        }
+        if (releaseObject) {
+            used.thenAccept(objectId -> objectId.ifPresent(id ->
+                tab.getSocketClient().sendAsync(Runtime.releaseObject(id), 2).exceptionally(ex -> null)));
+        }
+    }
+
+    /**
+     * Releases the remote handle of the element. The element stays usable, it is looked up again on the next call.
+     */
+    public void release(){
+        CompletableFuture<Optional<String>> used;
+        synchronized (this) {
+            used = handle;
+        }
+        if (used != null) forget(used, true);
+    }
+
+    private static Optional<String> callResult(Runtime.CallFunctionOnResult result){
+        if (result.exceptionDetails() != null || result.result() == null) return Optional.empty();
+        JsonNode value = result.result().value();
+        if (value == null || value.isNull()) return Optional.empty();
+        return Optional.of(value.isContainerNode() ? value.toString() : value.asText());
+    }
+
+    /**
+     * Parses {@code {x: ..., y: ...}} JSON returned by position and size scripts.
+     */
+    private Optional<int[]> parseXY(Optional<String> result, String errorMessage){
+        if (result.isEmpty()) return Optional.empty();
 
         String jsonResponse = result.get();
         if (jsonResponse.contains("not found")) return Optional.empty();
@@ -109,10 +308,10 @@ public class WebElement {
             String xRaw = tree.get("x").asText();
             String yRaw = tree.get("y").asText();
 
-            return Optional.of(new Dimension(Integer.parseInt(xRaw), Integer.parseInt(yRaw)));
+            return Optional.of(new int[]{Integer.parseInt(xRaw), Integer.parseInt(yRaw)});
         }
         catch (Exception ex){
-            logger.error("Can't get size of element", ex);
+            logger.error(errorMessage, ex);
             return Optional.empty();
         }
     }
@@ -121,14 +320,14 @@ public class WebElement {
      * Sets focus on the element.
      */
     public void getFocus(){
-        driver.executeJS(elementJs + ".focus()");
+        callOn("this.focus()", List.of()).join();
     }
 
     /**
      * Delete element and all his child elements from DOM
      */
     public void removeFromDOM(){
-        driver.executeJS(removeJs);
+        callOn("this.remove()", List.of()).join();
     }
 
     /**
@@ -137,7 +336,16 @@ public class WebElement {
      * @return An {@link Optional} containing the HTML content as a string, or an empty {@link Optional} if unavailable.
      */
     public Optional<String> getHTMLContent(){
-        return driver.executeJSAndGetResult(getContentJs);
+        return getHTMLContentAsync().join();
+    }
+
+    /**
+     * Asynchronous version of {@link #getHTMLContent()}.
+     *
+     * @return A future with the HTML content, or an empty {@link Optional} if unavailable.
+     */
+    public CompletableFuture<Optional<String>> getHTMLContentAsync(){
+        return callOn("return this.innerHTML", List.of());
     }
 
     /**
@@ -146,7 +354,16 @@ public class WebElement {
      * @return An {@link Optional} containing the text content as a string, or an empty {@link Optional} if unavailable.
      */
     public Optional<String> getText(){
-        return driver.executeJSAndGetResult(getTextJs);
+        return getTextAsync().join();
+    }
+
+    /**
+     * Asynchronous version of {@link #getText()}.
+     *
+     * @return A future with the text content, or an empty {@link Optional} if unavailable.
+     */
+    public CompletableFuture<Optional<String>> getTextAsync(){
+        return callOn("return this.innerText", List.of());
     }
 
     /**
@@ -155,7 +372,16 @@ public class WebElement {
      * @return An {@link Optional} containing the value as a string, or an empty {@link Optional} if unavailable.
      */
     public Optional<String> getValue(){
-        return driver.executeJSAndGetResult(getValueJs);
+        return getValueAsync().join();
+    }
+
+    /**
+     * Asynchronous version of {@link #getValue()}.
+     *
+     * @return A future with the value, or an empty {@link Optional} if unavailable.
+     */
+    public CompletableFuture<Optional<String>> getValueAsync(){
+        return callOn("return this.value", List.of());
     }
 
     /**
@@ -164,15 +390,25 @@ public class WebElement {
      * @return {@code true} if the element is clickable, {@code false} otherwise.
      */
     public boolean isClickable(){
-        var result = driver.executeJSAndGetResult(isClickableJs);
-        if (result.isEmpty()) return false;
+        return isClickableAsync().join();
+    }
 
-        try {
-            return Boolean.parseBoolean(result.get());
-        } catch (Exception ex) {
-            logger.error("Can't check is element is clickable", ex);
-            return false;
-        }
+    /**
+     * Asynchronous version of {@link #isClickable()}.
+     *
+     * @return A future that is completed with {@code true} if the element is clickable.
+     */
+    public CompletableFuture<Boolean> isClickableAsync(){
+        return probe("clickable", isClickableJs).thenApply(result -> {
+            if (result.isEmpty()) return false;
+
+            try {
+                return Boolean.parseBoolean(result.get());
+            } catch (Exception ex) {
+                logger.error("Can't check is element is clickable", ex);
+                return false;
+            }
+        });
     }
 
     /**
@@ -182,8 +418,17 @@ public class WebElement {
      * @return An {@link Optional} containing the attribute value as a string, or an empty {@link Optional} if unavailable.
      */
     public Optional<String> getAttribute(String attributeName){
-        String getAttributeJs = elementJs + ".getAttribute('" + attributeName + "')";
-        return driver.executeJSAndGetResult(getAttributeJs);
+        return getAttributeAsync(attributeName).join();
+    }
+
+    /**
+     * Asynchronous version of {@link #getAttribute(String)}.
+     *
+     * @param attributeName The name of the attribute to retrieve.
+     * @return A future with the attribute value, or an empty {@link Optional} if unavailable.
+     */
+    public CompletableFuture<Optional<String>> getAttributeAsync(String attributeName){
+        return callOn("return this.getAttribute(a)", List.of(TextNode.valueOf(attributeName)));
     }
 
     /**
@@ -208,8 +453,7 @@ public class WebElement {
      *                   If false, the bottom of the element will be aligned to the bottom of the visible area.
      */
     public void scrollIntoView(boolean alignToTop) {
-        String scrollJs = elementJs + ".scrollIntoView(" + alignToTop + ")";
-        driver.executeJS(scrollJs);
+        callOn("this.scrollIntoView(a)", List.of(BooleanNode.valueOf(alignToTop))).join();
     }
 
     /**
@@ -1,38 +1,147 @@
 package com.vityazev_egor.Core;
 
 import java.io.IOException;
-import java.net.URI;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
-import com.vityazev_egor.Core.LambdaWaitTask.TimeOutException;
-
-import jakarta.websocket.ClientEndpoint;
-import jakarta.websocket.CloseReason;
-import jakarta.websocket.ContainerProvider;
-import jakarta.websocket.OnClose;
-import jakarta.websocket.OnError;
-import jakarta.websocket.OnMessage;
-import jakarta.websocket.OnOpen;
-import jakarta.websocket.Session;
-import jakarta.websocket.WebSocketContainer;
-import lombok.Getter;
-import lombok.NoArgsConstructor;
-import lombok.Setter;
-
-@ClientEndpoint
+import com.fasterxml.jackson.databind.JsonNode;
+import com.vityazev_egor.Core.Transport.CDPTransport;
+import com.vityazev_egor.Core.Transport.TyrusTransport;
+
+/**
+ * CDP client: numbers commands, matches responses to them and hands events over to the {@link CDPEventBus}.
+ * The messages themselves are carried by a {@link CDPTransport}, websocket through Tyrus by default.
+ * <p>
+ * A client connected to the browser-level endpoint can drive many pages over the same connection:
+ * {@link #attachToTarget(String, Integer)} returns a view of the connection bound to a flattened session,
+ * every command sent through the view carries its {@code sessionId} and events of the page are delivered to the view's bus.
+ *
+ * <pre>{@code
+ * WebSocketClient browser = new WebSocketClient(browserDebuggerUrl);
+ * WebSocketClient page = browser.attachToTarget(targetId, 5).orElseThrow();
+ * page.sendAsync(Page.navigate("https://example.com"));
+ * }</pre>
+ */
 public class WebSocketClient {
-    private Session session;
+    // один планировщик таймаутов на все соединения, чтобы не держать поток на каждый запрос
+    private static final ScheduledExecutorService timeoutScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cdp-timeouts");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final int DEFAULT_TIMEOUT_SECONDS = 2;
+    // сообщения больше этого размера (в символах) складываются во временный файл, а не в память
+    private static final int SPOOL_THRESHOLD_CHARS = 4 * 1024 * 1024;
+
     private final CustomLogger logger = new CustomLogger(WebSocketClient.class.getName());
-    private final ConcurrentHashMap<Integer, AwaitedMessage> awaitedMessages = new ConcurrentHashMap<>();
+    private final Connection connection;
+    // null - команды идут самой цели соединения
+    private final String sessionId;
+    private final CDPEventBus eventBus;
+    // команды, отправленные через этот клиент, чтобы fail() мог отменить только их
+    private final Set<CompletableFuture<CDPMessage>> pending = ConcurrentHashMap.newKeySet();
+    // причина, по которой клиент больше не принимает команды
+    private volatile Throwable failure;
 
-    @Getter
-    @Setter
-    @NoArgsConstructor
-    private static class AwaitedMessage {
-        private String message;
-        private boolean isAccepted = false;
+    /**
+     * State shared by the client of a connection and all its session views:
+     * the transport, command ids, awaited responses and the routing of events by {@code sessionId}.
+     */
+    private static final class Connection implements CDPTransport.Listener {
+        private final CustomLogger logger = new CustomLogger(WebSocketClient.class.getName());
+        private final CDPTransport transport;
+        private final ConcurrentHashMap<Integer, CompletableFuture<CDPMessage>> awaitedMessages = new ConcurrentHashMap<>();
+        private final MessageAssembler messageAssembler = new MessageAssembler(SPOOL_THRESHOLD_CHARS);
+        private final AtomicInteger commandId = new AtomicInteger();
+        private final ConcurrentHashMap<String, WebSocketClient> sessions = new ConcurrentHashMap<>();
+        private final WebSocketClient root;
+        private final List<Consumer<String>> closeListeners = new CopyOnWriteArrayList<>();
+
+        private Connection(CDPTransport transport, WebSocketClient root) {
+            this.transport = transport;
+            this.root = root;
+        }
+
+        /**
+         * Receives messages part by part, so there is no upper limit for the size of a whole message.
+         *
+         * @param part Part of the message
+         * @param last Whether this is the final part of the message
+         */
+        @Override
+        public void onMessagePart(CharSequence part, boolean last) {
+            try {
+                messageAssembler.append(part, last).ifPresent(this::onMessage);
+            } catch (IOException ex) {
+                logger.error("Can't assemble message", ex);
+                messageAssembler.reset();
+            }
+        }
+
+        private void onMessage(CDPMessage cdpMessage) {
+            // читаем только id/method/sessionId, остальное разбирается лениво тем, кто ждёт ответ
+            if (cdpMessage.getId().isPresent()) {
+                logger.info("Amount of awaited messages = " + awaitedMessages.size());
+                CompletableFuture<CDPMessage> awaitedMessage = awaitedMessages.remove(cdpMessage.getId().get());
+                if (awaitedMessage != null) {
+                    awaitedMessage.complete(cdpMessage);
+                }
+            } else if (cdpMessage.isEvent()) {
+                routeEvent(cdpMessage);
+            }
+            logger.info(String.format("Received message id = %s, method = %s, session = %s, spooled = %s",
+                cdpMessage.getId().orElse(null), cdpMessage.getMethod().orElse(null),
+                cdpMessage.getSessionId().orElse(null), cdpMessage.getSpoolFile().isPresent()));
+        }
+
+        private void routeEvent(CDPMessage event) {
+            if (event.getMethod().filter("Target.detachedFromTarget"::equals).isPresent()) {
+                event.extract("params", "sessionId").map(sessions::remove).ifPresent(session -> session.eventBus.close());
+            }
+            // события сессий, для которых нет view (например, от setAutoAttach), остаются на шине соединения
+            WebSocketClient target = event.getSessionId().map(sessions::get).orElse(root);
+            target.eventBus.dispatch(event);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            logger.error("Error occurred: " + throwable.getMessage());
+        }
+
+        @Override
+        public void onClose(String reason) {
+            logger.warning("Connection closed: " + reason);
+            messageAssembler.reset();
+            failAwaitedMessages(new IOException("Connection closed: " + reason));
+            closeListeners.forEach(listener -> listener.accept(reason));
+        }
+
+        private int nextCommandId() {
+            return commandId.updateAndGet(id -> id + 1 >= CDPCommandBuilder.CONNECTION_ID_LIMIT ? 1 : id + 1);
+        }
+
+        /**
+         * Fails all pending commands so that waiting callers are released immediately.
+         *
+         * @param reason The cause passed to the pending futures
+         */
+        private void failAwaitedMessages(Throwable reason) {
+            awaitedMessages.values().forEach(awaitedMessage -> awaitedMessage.completeExceptionally(reason));
+            awaitedMessages.clear();
+        }
     }
 
     /**
@@ -42,51 +151,48 @@ public class WebSocketClient {
      * @throws Exception if the connection fails
      */
     public WebSocketClient(String url) throws Exception {
-        WebSocketContainer container = ContainerProvider.getWebSocketContainer();
-        container.setDefaultMaxTextMessageBufferSize(10*1024*1024);
-        container.connectToServer(this, new URI(url));
-    }
-
-    @OnOpen
-    public void onOpen(Session session) {
-        this.session = session;
-        logger.info("Connected to the server");
-    }
-
-    @OnMessage
-    public void onMessage(String message) {
-        CDPCommandBuilder.parseIdFromCommand(message).ifPresent(
-            messageId -> {
-                logger.info("Amount of awaited messages = " + awaitedMessages.size());
-                AwaitedMessage awaitedMessage = awaitedMessages.get(messageId);
-                if (awaitedMessage != null) {
-                    awaitedMessage.setMessage(message);
-                    awaitedMessage.setAccepted(true);
-                }
-            }
-        );
-        logger.info(String.format("Received message with content = %s", message.length() > 150 ? message.substring(0, 150) : message));
+        this(new TyrusTransport(url));
     }
 
-    @OnError
-    public void onError(Session session, Throwable throwable) {
-        logger.error("Error occurred: " + throwable.getMessage());
+    /**
+     * Creates a new client over the given transport and connects it.
+     *
+     * @param transport Channel to Chrome, e.g. {@link com.vityazev_egor.Core.Transport.PipeTransport}
+     * @throws IOException if the transport can't be connected
+     */
+    public WebSocketClient(CDPTransport transport) throws IOException {
+        this.sessionId = null;
+        this.eventBus = new CDPEventBus();
+        this.connection = new Connection(transport, this);
+        transport.connect(connection);
     }
 
-    @OnClose
-    public void onClose(Session session, CloseReason closeReason) {
-        logger.warning("Connection closed: " + closeReason);
-        awaitedMessages.clear();
+    /**
+     * View of an existing connection bound to a flattened session.
+     */
+    private WebSocketClient(Connection connection, String sessionId) {
+        this.connection = connection;
+        this.sessionId = sessionId;
+        this.eventBus = new CDPEventBus(connection.root.eventBus);
     }
 
     /**
      * Sends a command and waits for the result with default timeout settings.
-     * Uses a 2-second timeout and 150ms delay between checks.
+     * Uses a 2-second timeout.
      *
      * @param json The JSON command to send
      */
     public void sendCommand(String json) {
-        sendAndWaitResult(2, json, 150);
+        sendAndWaitResult(DEFAULT_TIMEOUT_SECONDS, json);
+    }
+
+    /**
+     * Sends a command numbered by this connection and waits for the result with a 2-second timeout.
+     *
+     * @param command The command to send
+     */
+    public void sendCommand(CDPCommand<?> command) {
+        sendAndWaitResult(DEFAULT_TIMEOUT_SECONDS, command);
     }
 
     /**
@@ -94,65 +200,360 @@ public class WebSocketClient {
      *
      * @param timeOutSeconds Maximum time to wait for response in seconds
      * @param json The JSON command to send
-     * @param delayMilis Delay between response checks in milliseconds
+     * @param delayMilis Not used anymore, responses are delivered as soon as they arrive
      * @return Optional containing the response message, or empty if timeout/error occurred
+     * @deprecated use {@link #sendAndWaitResult(Integer, String)}
      */
+    @Deprecated
     public Optional<String> sendAndWaitResult(Integer timeOutSeconds, String json, Integer delayMilis){
-        Integer messageId = null;
+        return sendAndWaitResult(timeOutSeconds, json);
+    }
+
+    /**
+     * Sends a command and waits for the response.
+     * The calling thread is released as soon as the response with the same id is received.
+     *
+     * @param timeOutSeconds Maximum time to wait for response in seconds
+     * @param json The JSON command to send
+     * @return Optional containing the response message, or empty if timeout/error occurred
+     */
+    public Optional<String> sendAndWaitResult(Integer timeOutSeconds, String json){
+        return await(sendMessageAsync(json, timeOutSeconds));
+    }
+
+    /**
+     * Sends a command numbered by this connection and waits for the response.
+     *
+     * @param timeOutSeconds Maximum time to wait for response in seconds
+     * @param command The command to send
+     * @return Optional containing the response message, or empty if timeout/error occurred
+     */
+    public Optional<String> sendAndWaitResult(Integer timeOutSeconds, CDPCommand<?> command){
+        return await(sendMessageAsync(command, timeOutSeconds));
+    }
+
+    private Optional<String> await(CompletableFuture<CDPMessage> response){
         try{
-            messageId = CDPCommandBuilder.parseIdFromCommand(json).orElseThrow(() -> new Exception("Can't parse id of command"));
-            logger.info("Sending message with id = " + messageId.toString());
-            
-            final AwaitedMessage awaitedMessage = new AwaitedMessage();
-            //регистрируем ожидание сообщения с определённым id
-            awaitedMessages.put(messageId, awaitedMessage);
-
-            // ждём пока ответ будет получен
-            var task = new LambdaWaitTask(awaitedMessage::isAccepted);
-            session.getAsyncRemote().sendText(json);
-
-            var result = task.execute(timeOutSeconds, delayMilis);
-            if (!result) throw new TimeOutException(String.format("Timeout during execution of task #%d", messageId));
-            
-            return Optional.of(awaitedMessage.getMessage());
-        } catch (TimeOutException ex){
-            logger.error(ex.getMessage());
+            return Optional.of(response.join().getRaw());
+        } catch (CompletionException ex){
+            if (ex.getCause() instanceof TimeoutException){
+                logger.error(ex.getCause().getMessage());
+            } else {
+                logger.error("Error in sendAndWaitResult method", ex);
+            }
             return Optional.empty();
         } catch (Exception ex){
             logger.error("Error in sendAndWaitResult method", ex);
             return Optional.empty();
-        } finally {
-            if (messageId != null) {
-                awaitedMessages.remove(messageId);
-            }
         }
     }
 
     /**
-     * Sends a command and waits for the response with default delay.
-     * Uses 150ms delay between response checks.
+     * Sends a command without blocking the calling thread.
+     * <p>
+     * The returned future is completed on the websocket I/O thread, so dependent stages must not block.
+     * Use the {@code *Async} methods of {@link CompletableFuture} for heavy or blocking continuations.
      *
+     * @param json The JSON command to send
      * @param timeOutSeconds Maximum time to wait for response in seconds
+     * @return future with the raw response message, completed exceptionally on timeout or connection error
+     */
+    public CompletableFuture<String> sendRawAsync(String json, Integer timeOutSeconds){
+        return sendMessageAsync(json, timeOutSeconds).thenApply(CDPMessage::getRaw);
+    }
+
+    /**
+     * Sends a command without blocking the calling thread using the default 2-second timeout.
+     *
      * @param json The JSON command to send
-     * @return Optional containing the response message, or empty if timeout/error occurred
+     * @return future with the raw response message
      */
-    public Optional<String> sendAndWaitResult(Integer timeOutSeconds, String json){
-        return sendAndWaitResult(timeOutSeconds, json, 150);
+    public CompletableFuture<String> sendRawAsync(String json){
+        return sendRawAsync(json, DEFAULT_TIMEOUT_SECONDS);
     }
 
     /**
-     * Closes the WebSocket session and cleans up resources.
-     * Clears all awaited messages to prevent memory leaks.
+     * Sends a command without blocking the calling thread.
+     * The response is handed over as a {@link CDPMessage}: the raw frame plus its header,
+     * so callers can pull single values out of it without parsing the whole frame.
+     *
+     * @param json The JSON command to send
+     * @param timeOutSeconds Maximum time to wait for response in seconds
+     * @return future with the response message
+     * @see #sendRawAsync(String, Integer)
      */
-    public void closeSession(){
+    public CompletableFuture<CDPMessage> sendMessageAsync(String json, Integer timeOutSeconds){
+        var messageId = CDPCommandBuilder.parseIdFromCommand(json);
+        if (messageId.isEmpty()) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Can't parse id of command"));
+        }
+        logger.info("Sending message with id = " + messageId.get());
+        return sendFrame(messageId.get(), withSessionId(json), timeOutSeconds);
+    }
+
+    /**
+     * Sends a command without blocking the calling thread. The id of the command is allocated by this connection,
+     * so commands built concurrently by different threads or drivers never share an id.
+     *
+     * @param command The command to send
+     * @param timeOutSeconds Maximum time to wait for response in seconds
+     * @return future with the response message
+     * @see #sendMessageAsync(String, Integer)
+     */
+    public CompletableFuture<CDPMessage> sendMessageAsync(CDPCommand<?> command, Integer timeOutSeconds){
+        int messageId = connection.nextCommandId();
+        String json;
         try {
-            if (session != null && session.isOpen()) {
-                session.close();
+            json = CDPCommandBuilder.serialize(messageId, sessionId, command);
+        } catch (IOException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+        logger.info("Sending message with id = " + messageId);
+        return sendFrame(messageId, json, timeOutSeconds);
+    }
+
+    private String withSessionId(String json){
+        if (sessionId == null || !json.startsWith("{")) return json;
+        // id сессии - hex строка, экранировать нечего
+        return "{\"sessionId\":\"" + sessionId + "\"," + json.substring(1);
+    }
+
+    /**
+     * Attaches to a target with {@code flatten: true} and returns a view of this connection bound to the new session.
+     * The command is sent to the browser itself, so it can be called on any view of the connection.
+     *
+     * @param targetId Id of the target, e.g. a page from {@code Target.getTargets}
+     * @param timeOutSeconds Maximum time to wait for response in seconds
+     * @return future with the session view, completed with {@link CDPException} if Chrome can't attach
+     */
+    public CompletableFuture<WebSocketClient> attachToTargetAsync(String targetId, Integer timeOutSeconds){
+        var command = CDPCommandBuilder.create("Target.attachToTarget")
+            .addParam("targetId", targetId)
+            .addParam("flatten", true);
+        return connection.root.sendAsync(command, timeOutSeconds)
+            .thenApply(result -> session(result.get("sessionId").asText()));
+    }
+
+    /**
+     * Attaches to a target with {@code flatten: true} and waits for the session view.
+     *
+     * @param targetId Id of the target
+     * @param timeOutSeconds Maximum time to wait for response in seconds
+     * @return Optional containing the session view, or empty if timeout/error occurred
+     * @see #attachToTargetAsync(String, Integer)
+     */
+    public Optional<WebSocketClient> attachToTarget(String targetId, Integer timeOutSeconds){
+        try {
+            return Optional.of(attachToTargetAsync(targetId, timeOutSeconds).join());
+        } catch (CompletionException ex) {
+            logger.error("Can't attach to target " + targetId + ": " + ex.getCause().getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Returns the view of this connection bound to an already attached flattened session,
+     * e.g. one reported by {@code Target.attachedToTarget}. The view is created once per session.
+     *
+     * @param sessionId Id of the session
+     * @return client that sends commands to the session and receives its events
+     */
+    public WebSocketClient session(String sessionId){
+        return connection.sessions.computeIfAbsent(sessionId, id -> new WebSocketClient(connection, id));
+    }
+
+    /**
+     * Registers a callback for the connection being closed by Chrome or by {@link #closeSession()} on the root client.
+     * Shared by all views of the connection.
+     *
+     * @param listener Receives the close reason
+     */
+    public void addCloseListener(Consumer<String> listener){
+        connection.closeListeners.add(listener);
+    }
+
+    /**
+     * Fails the commands waiting for a response and rejects new ones right away,
+     * e.g. when the page has crashed and Chrome won't answer them.
+     * On the root client the commands of all its session views are failed too.
+     *
+     * @param cause Exception passed to the failed futures
+     */
+    public void fail(Throwable cause){
+        failure = cause;
+        if (sessionId == null) {
+            connection.failAwaitedMessages(cause);
+        } else {
+            pending.forEach(awaitedMessage -> awaitedMessage.completeExceptionally(cause));
+        }
+    }
+
+    /**
+     * @return whether the client still accepts commands: the connection is open and {@link #fail(Throwable)} wasn't called
+     */
+    public boolean isAlive(){
+        return failure == null && connection.transport.isOpen();
+    }
+
+    /**
+     * @return id of the flattened session commands are routed to, empty if they go to the connection's own target
+     */
+    public Optional<String> getSessionId(){
+        return Optional.ofNullable(sessionId);
+    }
+
+    /**
+     * Sends a command without blocking the calling thread and parses the response.
+     *
+     * @param json The JSON command to send
+     * @param timeOutSeconds Maximum time to wait for response in seconds
+     * @return future with the parsed response message
+     * @see #sendRawAsync(String, Integer)
+     */
+    public CompletableFuture<JsonNode> sendAsync(String json, Integer timeOutSeconds){
+        return sendMessageAsync(json, timeOutSeconds).thenApply(CDPMessage::getTree);
+    }
+
+    /**
+     * Sends a command without blocking the calling thread using the default 2-second timeout
+     * and parses the response.
+     *
+     * @param json The JSON command to send
+     * @return future with the parsed response message
+     */
+    public CompletableFuture<JsonNode> sendAsync(String json){
+        return sendAsync(json, DEFAULT_TIMEOUT_SECONDS);
+    }
+
+    /**
+     * Sends a typed command without blocking the calling thread and decodes its result with a streaming parser.
+     *
+     * <pre>{@code
+     * socketClient.sendAsync(Page.navigate(url), 5)
+     *     .thenAccept(result -> System.out.println(result.frameId()));
+     * }</pre>
+     *
+     * @param command Command generated from the protocol schema, e.g. {@code Page.navigate(url)}
+     * @param timeOutSeconds Maximum time to wait for response in seconds
+     * @return future with the decoded result, completed with {@link CDPException} if Chrome returned an error
+     */
+    public <R> CompletableFuture<R> sendAsync(CDPCommand<R> command, Integer timeOutSeconds){
+        return sendMessageAsync(command, timeOutSeconds).thenApply(response -> {
+            try {
+                return response.readResult(command);
+            } catch (IOException ex) {
+                throw new CompletionException(ex);
+            }
+        });
+    }
+
+    /**
+     * Sends a typed command without blocking the calling thread using the default 2-second timeout.
+     *
+     * @param command Command generated from the protocol schema
+     * @return future with the decoded result
+     */
+    public <R> CompletableFuture<R> sendAsync(CDPCommand<R> command){
+        return sendAsync(command, DEFAULT_TIMEOUT_SECONDS);
+    }
+
+    /**
+     * Sends a typed command and waits for its decoded result.
+     *
+     * @param command Command generated from the protocol schema
+     * @param timeOutSeconds Maximum time to wait for response in seconds
+     * @return Optional containing the result, or empty if timeout/error occurred or the command has no result
+     */
+    public <R> Optional<R> send(CDPCommand<R> command, Integer timeOutSeconds){
+        try {
+            return Optional.ofNullable(sendAsync(command, timeOutSeconds).join());
+        } catch (CompletionException ex) {
+            logger.error("Error in send method: " + ex.getCause().getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Returns the bus that delivers CDP events received by this connection,
+     * or by the session if this client is a session view.
+     *
+     * @return event bus of this connection or session
+     */
+    public CDPEventBus getEventBus(){
+        return eventBus;
+    }
+
+    /**
+     * Creates a batch of commands that are sent back to back and cost a single round trip.
+     *
+     * @return a new empty {@link CommandBatch}
+     */
+    public CommandBatch batch(){
+        return new CommandBatch(this);
+    }
+
+    /**
+     * Registers a future for the given message id, schedules its timeout and writes the command to the socket.
+     *
+     * @param messageId Id of the command
+     * @param json The JSON command to send
+     * @param timeOutSeconds Maximum time to wait for response in seconds
+     * @return future that is completed by the reader of the connection when the response arrives
+     */
+    private CompletableFuture<CDPMessage> sendFrame(Integer messageId, String json, Integer timeOutSeconds){
+        // не ждём таймаут, если ответа заведомо не будет
+        if (failure != null) {
+            return CompletableFuture.failedFuture(failure);
+        }
+        if (!connection.transport.isOpen()) {
+            return CompletableFuture.failedFuture(new IOException("Connection is closed"));
+        }
+        final CompletableFuture<CDPMessage> awaitedMessage = new CompletableFuture<>();
+        pending.add(awaitedMessage);
+        final var awaitedMessages = connection.awaitedMessages;
+        //регистрируем ожидание сообщения с определённым id
+        awaitedMessages.put(messageId, awaitedMessage);
+
+        ScheduledFuture<?> timeout = timeoutScheduler.schedule(
+            () -> awaitedMessage.completeExceptionally(new TimeoutException(String.format("Timeout during execution of task #%d", messageId))),
+            timeOutSeconds,
+            TimeUnit.SECONDS
+        );
+        awaitedMessage.whenComplete((result, error) -> {
+            timeout.cancel(false);
+            awaitedMessages.remove(messageId, awaitedMessage);
+            pending.remove(awaitedMessage);
+        });
+
+        connection.transport.send(json).whenComplete((sent, error) -> {
+            if (error != null) {
+                awaitedMessage.completeExceptionally(error);
+            }
+        });
+        return awaitedMessage;
+    }
+
+    /**
+     * Closes the connection and cleans up resources. Fails all awaited messages to release waiting callers.
+     * <p>
+     * Called on a session view it only detaches from the session, the connection and other sessions stay open.
+     */
+    public void closeSession(){
+        if (sessionId != null) {
+            connection.sessions.remove(sessionId, this);
+            eventBus.close();
+            if (connection.transport.isOpen()) {
+                connection.root.sendMessageAsync(CDPCommandBuilder.create("Target.detachFromTarget").addParam("sessionId", sessionId), DEFAULT_TIMEOUT_SECONDS);
             }
-        } catch (IOException e) {
-            logger.error("Can't close session", e);
+            return;
+        }
+        try {
+            connection.transport.close();
         } finally {
-            awaitedMessages.clear();
+            connection.failAwaitedMessages(new IOException("Session closed"));
+            connection.sessions.values().forEach(session -> session.eventBus.close());
+            connection.sessions.clear();
+            eventBus.close();
         }
     }
     
@@ -1,32 +1,45 @@
 package com.vityazev_egor;
 
-import java.awt.Dimension;
 import java.io.File;
 import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.ArrayList;
 import java.util.concurrent.Callable;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
+import com.evanlennick.retry4j.CallExecutor;
 import com.evanlennick.retry4j.CallExecutorBuilder;
+import com.evanlennick.retry4j.Status;
 import com.evanlennick.retry4j.config.RetryConfig;
 import com.evanlennick.retry4j.config.RetryConfigBuilder;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.vityazev_egor.Core.CDPCommandBuilder;
 import com.vityazev_egor.Core.ConsoleListener;
 import com.vityazev_egor.Core.CustomLogger;
+import com.vityazev_egor.Core.LeakTracker;
+import com.vityazev_egor.Core.Shared;
 import com.vityazev_egor.Core.WebSocketClient;
-import com.vityazev_egor.Core.Driver.Input;
-import com.vityazev_egor.Core.Driver.Misc;
-import com.vityazev_egor.Core.Driver.Navigation;
+import com.vityazev_egor.Core.Transport.JdkWebSocketTransport;
+import com.vityazev_egor.Core.Transport.PipeTransport;
 import com.vityazev_egor.Core.Driver.XDO;
-import com.vityazev_egor.Core.WebElements.By;
-import com.vityazev_egor.Core.WebElements.WebElement;
 import com.vityazev_egor.Models.DevToolsInfo;
+import com.vityazev_egor.Protocol.Browser;
+import com.vityazev_egor.Protocol.Target;
 
 import lombok.Getter;
 import lombok.Setter;
@@ -34,15 +47,48 @@ import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
 
-public class NoDriver{
+/**
+ * Chrome process and the tab Chrome opened at startup. More tabs of the same browser are opened with {@link #newTab(String)}.
+ */
+public class NoDriver extends Tab implements AutoCloseable {
     private static final boolean DEBUG_MODE = false;
+    private static final int STARTUP_TIMEOUT_SECONDS = 30;
+    private static final long FIRST_PROBE_DELAY_MILLIS = 10;
+    private static final long MAX_PROBE_DELAY_MILLIS = 500;
+    // 10, 20, ... 320 мс, дальше по 500 мс - около 30 секунд
+    private static final int STARTUP_RETRIES = 66;
+    // один клиент на все запросы к DevTools, иначе каждый держит свой пул соединений и потоки
+    private static final OkHttpClient HTTP = new OkHttpClient();
     
     @Getter
     private Process chrome;
     private final CustomLogger logger = new CustomLogger(NoDriver.class.getName());
+    // не null, если Chrome запущен с --remote-debugging-pipe
+    private PipeTransport pipeTransport;
+    // соединение с самим браузером, создаётся сразу для flattened сессий или при открытии первой дополнительной вкладки
+    private WebSocketClient browserClient;
+    private NoDriverOptions.Transport transport;
+    // ws://.../devtools/browser/<id>, известен после запуска, кроме режима pipe
+    private String browserWebSocketUrl;
+    private final List<Tab> tabs = new CopyOnWriteArrayList<>();
+    private final List<BrowserContext> contexts = new CopyOnWriteArrayList<>();
     @Getter
-    private WebSocketClient socketClient;
-    private String tabId;
+    private int debuggingPort;
+    @Getter
+    private String userDataDir;
+    // клон эталонного профиля, удаляется вместе с браузером
+    private ProfileManager profileManager;
+    private Path clonedProfile;
+    private final NoDriverOptions options;
+    // адрес чужого браузера, к которому подключились через connect(); null, если Chrome запущен нами
+    private final String remoteEndpoint;
+    private ConsoleListener consoleListener;
+    @Getter
+    private final ChromeSupervisor supervisor;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    // процесс текущего запуска для LeakTracker, который не должен ссылаться на сам драйвер
+    private final AtomicReference<Process> launchedProcess = new AtomicReference<>();
+    private final LeakTracker.Tracked leakTracker;
     public final boolean isWindows;
 
     // переменные, который используются для корректировки нажатий через xdo
@@ -53,12 +99,6 @@ public class NoDriver{
     // расширение функционала
     @Getter
     private final XDO xdo;
-    @Getter
-    private final Input input;
-    @Getter
-    private final Navigation navigation;
-    @Getter
-    private final Misc misc;
 
     /**
      * Creates a new driver instance with the provided options.
@@ -67,42 +107,131 @@ public class NoDriver{
      * @throws IOException if Chrome cannot be started
      */
     public NoDriver(NoDriverOptions options) throws IOException{
+        this(options, null);
+    }
+
+    private NoDriver(NoDriverOptions options, String remoteEndpoint) throws IOException{
         if (options == null) {
             options = NoDriverOptions.builder().build();
         }
+        this.options = options;
+        this.remoteEndpoint = remoteEndpoint;
         this.isWindows = isWindowsOS();
+
+        if (remoteEndpoint != null) {
+            // профилем управляет тот, кто запустил браузер
+            this.userDataDir = null;
+        } else if (options.getProfileManager() != null) {
+            profileManager = options.getProfileManager();
+            clonedProfile = profileManager.createClone();
+            this.userDataDir = clonedProfile.toString();
+        } else {
+            this.userDataDir = getUserDataDir(options);
+        }
+        xdo = new XDO(this);
+        try {
+            start();
+        } catch (IOException | RuntimeException e) {
+            // не оставляем запущенный Chrome и клон профиля, если подключиться не удалось
+            destroyProcessTree(launchedProcess.get());
+            if (clonedProfile != null) {
+                profileManager.release(clonedProfile);
+            }
+            throw e;
+        }
+        supervisor = new ChromeSupervisor(this, options.getMaxRestarts(), options.getRestartWindow());
+        supervisor.watch();
+        leakTracker = LeakTracker.track(this, remoteEndpoint != null ? "NoDriver attached to " + remoteEndpoint : "NoDriver with profile " + userDataDir,
+            leakCleanup(launchedProcess, profileManager, clonedProfile));
+    }
+
+    private static Runnable leakCleanup(AtomicReference<Process> process, ProfileManager profileManager, Path clonedProfile) {
+        return () -> {
+            destroyProcessTree(process.get());
+            if (clonedProfile != null) {
+                profileManager.release(clonedProfile);
+            }
+        };
+    }
+
+    /**
+     * Attaches to a running Chrome instead of launching one, e.g. a long-lived browser in another container.
+     * The driver works in its own new tab; {@link #exit()} closes the tab and the connection but never the browser.
+     *
+     * @param endpoint Browser websocket url ({@code ws://host:port/devtools/browser/<id>}) or {@code host:port} of the debugging port
+     * @return driver attached to the browser
+     * @throws IOException if the endpoint can't be reached
+     */
+    public static NoDriver connect(String endpoint) throws IOException {
+        return connect(endpoint, null);
+    }
+
+    /**
+     * Attaches to a running Chrome with the given options. Only the transport and restart options are used,
+     * the launch options belong to whoever started the browser.
+     *
+     * @param endpoint Browser websocket url or {@code host:port} of the debugging port
+     * @param options Driver options, {@code null} for the defaults
+     * @return driver attached to the browser
+     * @throws IOException if the endpoint can't be reached
+     * @see #connect(String)
+     */
+    public static NoDriver connect(String endpoint, NoDriverOptions options) throws IOException {
+        return new NoDriver(options, endpoint);
+    }
+
+    /**
+     * @return whether the driver is attached to a browser it didn't launch, see {@link #connect(String)}
+     */
+    public boolean isAttached() {
+        return remoteEndpoint != null;
+    }
+
+    /**
+     * Launches Chrome and connects to its first page.
+     */
+    private void start() throws IOException {
+        if (remoteEndpoint != null) {
+            attachToEndpoint();
+            return;
+        }
+        NoDriverOptions.Transport transport = options.getTransport();
+        if (isWindows && transport == NoDriverOptions.Transport.PIPE) {
+            logger.warning("Debugging pipe is not supported on Windows, using websocket");
+            transport = NoDriverOptions.Transport.TYRUS;
+        }
+        this.debuggingPort = options.getDebuggingPort();
+        // порт, выбранный самим Chrome, читаем из этого файла, старая копия может остаться от прошлого запуска
+        Files.deleteIfExists(Path.of(userDataDir, "DevToolsActivePort"));
         
         if (isWindows) {
             chrome = launchChromeWindows(options);
         } else {
-            chrome = launchChromeLinux(options);
+            chrome = launchChromeLinux(options, transport);
         }
 
-        CountDownLatch initLatch = new CountDownLatch(1);
-        ConsoleListener consoleListenerInstance = new ConsoleListener(chrome, DEBUG_MODE, initLatch);
-        Thread consoleListener = new Thread(consoleListenerInstance);
-        consoleListener.start();
+        launchedProcess.set(chrome);
+        consoleListener = new ConsoleListener(chrome, DEBUG_MODE);
+        Thread consoleThread = new Thread(consoleListener, "chrome-console");
+        // поток сам завершается вместе с Chrome и не должен держать JVM
+        consoleThread.setDaemon(true);
+        consoleThread.start();
         
-        try {
-            if (!initLatch.await(30, TimeUnit.SECONDS)) {
-                throw new IOException("Chrome initialization timeout after 30 seconds");
-            }
-            
-            // Проверяем, была ли инициализация успешной
-            if (!consoleListenerInstance.isInitializationSuccessful()) {
-                throw new IOException("Chrome process failed to initialize properly");
-            }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new IOException("Chrome initialization was interrupted", e);
+        // в режиме pipe готовность определяется по самому каналу, вывод Chrome не ждём
+        if (pipeTransport == null) {
+            browserWebSocketUrl = awaitBrowserEndpoint(consoleListener);
+            debuggingPort = URI.create(browserWebSocketUrl).getPort();
         }
         
         logger.info("Chrome initialization done");
-        xdo = new XDO(this);
-        input = new Input(this);
-        navigation = new Navigation(this);
-        misc = new Misc(this);
-        findNewTab();
+        this.transport = transport;
+        if (pipeTransport != null) {
+            attachToFirstPage(new WebSocketClient(pipeTransport));
+        } else if (options.isFlattenSessions()) {
+            attachToFirstPage(connectToBrowser(transport));
+        } else {
+            findNewTab(transport);
+        }
     }
 
     /**
@@ -119,13 +248,14 @@ public class NoDriver{
      * Gets the absolute path to the Chrome user data directory.
      * Creates the directory if it doesn't exist.
      *
-     * @return Absolute path to the nodriverData directory
+     * @param options Options with an optional custom profile directory
+     * @return Absolute path to the profile, {@code ~/nodriverData} by default
      * @throws IOException if the directory cannot be created
      */
-    private String getUserDataDir() throws IOException {
-        // Get current working directory (where the program is running)
-        String currentDir = System.getProperty("user.home");
-        File userDataDir = new File(currentDir, "nodriverData");
+    private String getUserDataDir(NoDriverOptions options) throws IOException {
+        File userDataDir = options.getUserDataDir() != null
+            ? new File(options.getUserDataDir())
+            : new File(System.getProperty("user.home"), "nodriverData");
         
         // Create directory if it doesn't exist
         if (!userDataDir.exists()) {
@@ -138,24 +268,117 @@ public class NoDriver{
         return userDataDir.getAbsolutePath();
     }
 
+    /**
+     * Waits until DevTools accepts connections. Normally Chrome reports it with the {@code DevTools listening on} line.
+     * When the line doesn't come (Chrome on Windows prints nothing, a launch with the profile of a running browser
+     * hands over to it and exits) {@code /json/version} is probed with exponential backoff.
+     *
+     * @param consoleListener Listener of the launched Chrome process
+     * @return browser websocket url
+     * @throws IOException if DevTools didn't start listening in 30 seconds
+     */
+    private String awaitBrowserEndpoint(ConsoleListener consoleListener) throws IOException {
+        CompletableFuture<String> endpoint = new CompletableFuture<>();
+        consoleListener.getDevToolsUrl().thenAccept(endpoint::complete);
+        CompletableFuture.runAsync(() -> probeBrowserEndpoint(endpoint));
+        try {
+            String url = endpoint.get(STARTUP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            logger.info("DevTools is listening on " + url);
+            return url;
+        } catch (TimeoutException e) {
+            endpoint.cancel(false);
+            throw new IOException("Chrome initialization timeout after " + STARTUP_TIMEOUT_SECONDS + " seconds");
+        } catch (ExecutionException e) {
+            throw new IOException("Chrome process failed to initialize properly", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            endpoint.cancel(false);
+            throw new IOException("Chrome initialization was interrupted", e);
+        }
+    }
+
+    /**
+     * Probes {@code /json/version} until the endpoint future is completed by either side.
+     */
+    private void probeBrowserEndpoint(CompletableFuture<String> endpoint) {
+        OkHttpClient client = HTTP;
+        ObjectMapper objectMapper = new ObjectMapper();
+        long delay = FIRST_PROBE_DELAY_MILLIS;
+        while (!endpoint.isDone()) {
+            // при обычном запуске строка в консоли приходит раньше первой проверки
+            Shared.sleep(delay);
+            delay = Math.min(delay * 2, MAX_PROBE_DELAY_MILLIS);
+            int port = debuggingPort != 0 ? debuggingPort : readActivePort().orElse(0);
+            if (port == 0) {
+                if (!chrome.isAlive()) {
+                    endpoint.completeExceptionally(new IOException("Chrome exited before reporting its debugging port"));
+                }
+                continue;
+            }
+            Request request = new Request.Builder()
+                .url("http://localhost:" + port + "/json/version")
+                .get()
+                .build();
+            try (Response response = client.newCall(request).execute()) {
+                if (response.isSuccessful() && response.body() != null) {
+                    String url = objectMapper.readTree(response.body().string()).path("webSocketDebuggerUrl").asText();
+                    if (!url.isEmpty()) {
+                        endpoint.complete(url);
+                    }
+                }
+            } catch (IOException ignored) {
+                // порт ещё не слушается
+            }
+        }
+    }
+
+    /**
+     * Reads the port Chrome picked for {@code --remote-debugging-port=0} from {@code DevToolsActivePort} in the profile.
+     *
+     * @return debugging port, empty if Chrome hasn't written the file yet
+     */
+    private Optional<Integer> readActivePort() {
+        Path portFile = Path.of(userDataDir, "DevToolsActivePort");
+        try {
+            // первая строка - порт, вторая - путь websocket браузера; файл может быть ещё не дописан
+            List<String> lines = Files.readAllLines(portFile, StandardCharsets.UTF_8);
+            return lines.isEmpty() ? Optional.empty() : Optional.of(Integer.parseInt(lines.get(0).trim()));
+        } catch (IOException | NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Retries that start at 10 ms and double up to 500 ms, so a ready browser is found at once
+     * and a slow one isn't hammered. About 30 seconds in total.
+     */
+    private static RetryConfig startupRetryConfig() {
+        return new RetryConfigBuilder()
+            .retryOnAnyException()
+            .withMaxNumberOfTries(STARTUP_RETRIES)
+            .withDelayBetweenTries(Duration.ofMillis(FIRST_PROBE_DELAY_MILLIS))
+            .withBackoffStrategy((failedTries, delay) ->
+                Duration.ofMillis(Math.min(delay.toMillis() << Math.min(failedTries - 1, 16), MAX_PROBE_DELAY_MILLIS)))
+            .build();
+    }
+
     /**
      * Launches Chrome browser on Linux using google-chrome command.
      *
      * @param options Configuration for window size, proxy, and headless mode.
+     * @param transport Channel to Chrome: debugging port for websockets or debugging pipe
      * @return Process object representing the Chrome browser process
      * @throws IOException if Chrome cannot be started
      */
-    private Process launchChromeLinux(NoDriverOptions options) throws IOException {
+    private Process launchChromeLinux(NoDriverOptions options, NoDriverOptions.Transport transport) throws IOException {
         ProcessBuilder browser = new ProcessBuilder(
             "google-chrome", 
-            "--remote-debugging-port=9222", 
-            "--remote-allow-origins=*", 
             String.format("--window-size=%d,%d", options.getWindowWidth(), options.getWindowHeight()),
             "--no-first-run",
             "--no-default-browser-check",
             "--lang=en",
             "--accept-language=en-US,en",
-            "--user-data-dir=" + getUserDataDir()
+            "--user-data-dir=" + userDataDir
         );
         
         if (options.getSocks5Proxy() != null && !options.getSocks5Proxy().isEmpty()) {
@@ -168,15 +391,31 @@ public class NoDriver{
         if (options.isFullScreen()) {
             browser.command().add("--start-fullscreen");
         }
+        addTweaks(browser, options);
 
         if (System.getProperty("user.name").contains("root")) {
             browser.command().add("--no-sandbox");
         }
+
+        if (transport == NoDriverOptions.Transport.PIPE) {
+            pipeTransport = PipeTransport.create();
+            browser.command(pipeTransport.wrapCommand(browser.command()));
+        } else {
+            browser.command().add("--remote-debugging-port=" + debuggingPort);
+            browser.command().add("--remote-allow-origins=*");
+        }
         
         browser.redirectErrorStream(true);
         return browser.start();
     }
 
+    private static void addTweaks(ProcessBuilder browser, NoDriverOptions options) {
+        options.getTweaks().forEach(tweak -> browser.command().addAll(tweak.getSwitches()));
+        if (options.getRendererProcessLimit() > 0) {
+            browser.command().add("--renderer-process-limit=" + options.getRendererProcessLimit());
+        }
+    }
+
     /**
      * Launches Chrome browser on Windows using chrome.exe from common installation paths.
      *
@@ -189,14 +428,14 @@ public class NoDriver{
         
         ProcessBuilder browser = new ProcessBuilder(
             chromeExecutable,
-            "--remote-debugging-port=9222", 
+            "--remote-debugging-port=" + debuggingPort,
             "--remote-allow-origins=*", 
             String.format("--window-size=%d,%d", options.getWindowWidth(), options.getWindowHeight()),
             "--no-first-run",
             "--no-default-browser-check",
             "--lang=en",
             "--accept-language=en-US,en",
-            "--user-data-dir=" + getUserDataDir()
+            "--user-data-dir=" + userDataDir
         );
         
         if (options.getSocks5Proxy() != null && !options.getSocks5Proxy().isEmpty()) {
@@ -209,6 +448,7 @@ public class NoDriver{
         if (options.isFullScreen()) {
             browser.command().add("--start-fullscreen");
         }
+        addTweaks(browser, options);
         
         browser.redirectErrorStream(true);
         return browser.start();
@@ -239,20 +479,15 @@ public class NoDriver{
     }
 
     // find web socket url to control new tab of chrome
-    private void findNewTab(){
-        OkHttpClient client = new OkHttpClient().newBuilder().build();
+    private void findNewTab(NoDriverOptions.Transport transport){
+        OkHttpClient client = HTTP;
         Request request = new Request.Builder()
-            .url("http://localhost:9222/json")
+            .url("http://localhost:" + debuggingPort + "/json")
             .get()
             .build();
         ObjectMapper objectMapper = new ObjectMapper();
 
-        RetryConfig retryConfig = new RetryConfigBuilder()
-            .retryOnAnyException()
-            .withMaxNumberOfTries(30)
-            .withDelayBetweenTries(Duration.ofSeconds(2))
-            .withFixedBackoff()
-            .build();
+        RetryConfig retryConfig = startupRetryConfig();
 
         Callable<Boolean> connectToChrome = () -> {
             try (Response response = client.newCall(request).execute()) {
@@ -271,7 +506,7 @@ public class NoDriver{
                 logger.info("Found new tab");
                 logger.info(newTab.getWebSocketDebuggerUrl());
                 this.tabId = newTab.getId();
-                this.socketClient = new WebSocketClient(newTab.getWebSocketDebuggerUrl());
+                this.socketClient = openWebSocket(transport, newTab.getWebSocketDebuggerUrl());
                 return true;
             }
         };
@@ -287,150 +522,388 @@ public class NoDriver{
                 
             executor.execute(connectToChrome);
         } catch (Exception e) {
-            logger.error("Failed to connect to Chrome DevTools after 30 attempts: " + e.getMessage());
-            throw new RuntimeException("Unable to establish connection with Chrome DevTools after 60 seconds. Browser may not be ready.", e);
+            logger.error("Failed to connect to Chrome DevTools after " + STARTUP_RETRIES + " attempts: " + e.getMessage());
+            throw new RuntimeException("Unable to establish connection with Chrome DevTools after " + STARTUP_TIMEOUT_SECONDS + " seconds. Browser may not be ready.", e);
         }
     }
 
-    public Optional<Double> getCurrentPageTime(){
-        var sDouble = executeJSAndGetResult("performance.now()");
-        return sDouble.map(Double::parseDouble);
+    private static WebSocketClient openWebSocket(NoDriverOptions.Transport transport, String url) throws Exception {
+        return transport == NoDriverOptions.Transport.JDK_WEBSOCKET
+            ? new WebSocketClient(new JdkWebSocketTransport(url))
+            : new WebSocketClient(url);
     }
 
-    public Optional<String> getHtml(){
-        return executeJSAndGetResult("document.documentElement.outerHTML");
+    /**
+     * Connects to the browser-level websocket Chrome reported at startup.
+     *
+     * @throws IOException if the connection can't be opened
+     */
+    private WebSocketClient connectToBrowser(NoDriverOptions.Transport transport) throws IOException {
+        try {
+            return openWebSocket(transport, browserWebSocketUrl);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Unable to connect to Chrome browser endpoint", e);
+        }
     }
 
-    public Optional<String> getTitle(){
-        return executeJSAndGetResult("document.title");
+    /**
+     * Attaches to the page Chrome opened at startup with a flattened session over the browser-level connection.
+     * Other pages can be attached to the same connection, see {@link WebSocketClient#attachToTarget(String, Integer)}.
+     *
+     * @param browserClient Connection to the browser target (debugging pipe or browser websocket)
+     * @throws IOException if the page can't be found or attached
+     */
+    private void attachToFirstPage(WebSocketClient browserClient) throws IOException {
+        this.browserClient = browserClient;
+
+        RetryConfig retryConfig = startupRetryConfig();
+
+        // первая вкладка появляется не сразу после запуска
+        Callable<Target.TargetInfo> findPage = () -> {
+            var pages = browserClient.sendAsync(Target.getTargets(), 30).join()
+                .targetInfos().stream()
+                .filter(target -> target.type().equals("page"))
+                .toList();
+            return pages.stream()
+                .filter(target -> target.url().equals("chrome://newtab/"))
+                .findFirst()
+                .or(() -> pages.stream().findFirst())
+                .orElseThrow(() -> new IOException("Can't find new tab!"));
+        };
+
+        try {
+            // config() возвращает сырой билдер, поэтому без цепочки: иначе build() даёт сырой CallExecutor
+            CallExecutorBuilder<Target.TargetInfo> builder = new CallExecutorBuilder<>();
+            builder.config(retryConfig);
+            CallExecutor<Target.TargetInfo> executor = builder.build();
+            Status<Target.TargetInfo> status = executor.execute(findPage);
+            Target.TargetInfo page = status.getResult();
+            this.socketClient = browserClient.attachToTargetAsync(page.targetId(), 10).join();
+            this.tabId = page.targetId();
+            logger.info("Attached to tab " + tabId + " with session " + socketClient.getSessionId().orElse(null));
+        } catch (Exception e) {
+            throw new IOException("Unable to attach to Chrome tab", e);
+        }
     }
 
-    public Optional<String> getCurrentUrl(){
-        return executeJSAndGetResult("window.location.href");
+    /**
+     * Connects to the browser given to {@link #connect(String)} and opens the tab of this driver,
+     * so several workers can share one browser without touching each other's pages.
+     */
+    private void attachToEndpoint() throws IOException {
+        transport = options.getTransport() == NoDriverOptions.Transport.JDK_WEBSOCKET
+            ? NoDriverOptions.Transport.JDK_WEBSOCKET
+            : NoDriverOptions.Transport.TYRUS;
+        browserWebSocketUrl = resolveBrowserEndpoint(remoteEndpoint);
+        debuggingPort = URI.create(browserWebSocketUrl).getPort();
+        browserClient = connectToBrowser(transport);
+        try {
+            tabId = browserClient.sendAsync(Target.createTarget("about:blank"), 10).join().targetId();
+            socketClient = browserClient.attachToTargetAsync(tabId, 10).join();
+        } catch (CompletionException e) {
+            browserClient.closeSession();
+            throw new IOException("Unable to open tab in " + browserWebSocketUrl, e.getCause());
+        }
+        logger.info("Attached to " + browserWebSocketUrl + ", tab " + tabId);
     }
 
-    public Optional<Dimension> getViewPortSize() {
-        var portWidth = executeJSAndGetResult("window.innerWidth");
-        var portHeight = executeJSAndGetResult("window.innerHeight");
-        // Если оба результата присутствуют, создаем и возвращаем Optional<Dimension>
-        if (portWidth.isPresent() && portHeight.isPresent()) {
-            return Optional.of(new Dimension(Integer.parseInt(portWidth.get()), Integer.parseInt(portHeight.get())));
-        } else {
-            return Optional.empty();
+    /**
+     * Turns {@code host:port} into the browser websocket url from {@code /json/version}.
+     * Chrome reports the url with the host it listens on, which is wrong from another node, so the host is replaced.
+     */
+    private static String resolveBrowserEndpoint(String endpoint) throws IOException {
+        if (endpoint.startsWith("ws://") || endpoint.startsWith("wss://")) {
+            return endpoint;
         }
-    }    
-
-    public void emulateKey(){
-        String keyDown = CDPCommandBuilder.create("Input.dispatchKeyEvent")
-            .addParam("type", "keyDown")
-            .addParam("key", "End")
-            .addParam("code", "End")
-            .addParam("keyCode", 35)
-            .addParam("modifiers", 0)
-            .addParam("autoRepeat", false)
-            .addParam("isKeypad", false)
-            .addParam("isSystemKey", true)
-            .addParam("location", 0)
+        String address = endpoint.replaceFirst("^https?://", "").replaceFirst("/+$", "");
+        Request request = new Request.Builder()
+            .url("http://" + address + "/json/version")
+            .get()
             .build();
+        try (Response response = HTTP.newCall(request).execute()) {
+            String body = response.body() != null ? response.body().string() : "";
+            if (!response.isSuccessful()) {
+                throw new IOException("DevTools at " + address + " answered " + response.code() + ": " + body);
+            }
+            String url = new ObjectMapper().readTree(body).path("webSocketDebuggerUrl").asText();
+            if (url.isEmpty()) {
+                throw new IOException("DevTools at " + address + " didn't report the browser websocket url");
+            }
+            URI reported = URI.create(url);
+            return reported.getScheme() + "://" + address + reported.getRawPath();
+        }
+    }
 
-        String keyUp = CDPCommandBuilder.create("Input.dispatchKeyEvent")
-            .addParam("type", "keyUp")
-            .addParam("key", "End")
-            .addParam("code", "End")
-            .addParam("keyCode", 35)
-            .addParam("modifiers", 0)
-            .addParam("autoRepeat", false)
-            .addParam("isKeypad", false)
-            .addParam("isSystemKey", true)
-            .addParam("location", 0)
-            .build();
+    @Override
+    public NoDriver getDriver() {
+        return this;
+    }
 
-        socketClient.sendCommand(keyDown);
-        socketClient.sendCommand(keyUp);
+    /**
+     * Returns the connection to the browser target that carries the sessions of all tabs.
+     * Opened on first use when the main tab has its own page websocket.
+     *
+     * @return browser-level client
+     * @throws IOException if Chrome doesn't answer on the debugging port
+     */
+    public synchronized WebSocketClient getBrowserClient() throws IOException {
+        if (browserClient == null) {
+            browserClient = connectToBrowser(transport);
+        }
+        return browserClient;
     }
 
     /**
-     * Executes the given JavaScript code in the tab.
+     * Opens a blank tab in the same browser.
      *
-     * @param js JavaScript code to execute.
+     * @return the new tab
+     * @throws IOException if the tab can't be created or attached
+     * @see #newTab(String)
      */
-    public void executeJS(String js){
-        String command = CDPCommandBuilder.create("Runtime.evaluate")
-            .addParam("expression", js)
-            .build();
-        socketClient.sendAndWaitResult(2, command, 50);
+    public Tab newTab() throws IOException {
+        return newTab("about:blank");
     }
 
     /**
-     * Executes the given JavaScript code in the tab and returns the result.
-     * Make sure that your JavaScript code returns only one string!
+     * Opens a tab in the same browser and attaches to it with a flattened session over the browser-level connection.
      *
-     * @param js JavaScript code to execute.
-     * @return An {@code Optional<String>} containing the result of the JavaScript execution,
-     *         or {@code Optional.empty()} if no result is available.
+     * @param url URL to open in the tab
+     * @return the new tab
+     * @throws IOException if the tab can't be created or attached
      */
-    public Optional<String> executeJSAndGetResult(String js){
-        String command = CDPCommandBuilder.create("Runtime.evaluate")
-            .addParam("expression", js)
-            .build();
-        var response = socketClient.sendAndWaitResult(2, command);
-        return response.flatMap(CDPCommandBuilder::getJsResult);
+    public Tab newTab(String url) throws IOException {
+        Tab tab = openTab(url, null);
+        tabs.add(tab);
+        return tab;
+    }
+
+    Tab openTab(String url, String browserContextId) throws IOException {
+        WebSocketClient browser = getBrowserClient();
+        try {
+            var command = Target.createTarget(url).browserContextId(browserContextId);
+            String targetId = browser.sendAsync(command, 10).join().targetId();
+            Tab tab = new Tab(this, browser.attachToTargetAsync(targetId, 10).join(), targetId);
+            logger.info("Opened tab " + targetId);
+            return tab;
+        } catch (CompletionException e) {
+            throw new IOException("Can't open new tab", e.getCause());
+        }
     }
 
     /**
-     * Returns single web element in the browser using the specified selector.
-     * After that you should make sure that element exists by calling .isExist method
+     * Creates an isolated browser context with its own cookies, storage and cache.
      *
-     * @param by The selector used to locate the element.
-     * @return A {@code WebElement} representing the found element.
+     * @return the new context
+     * @throws IOException if Chrome doesn't create the context
+     * @see #newContext(String)
      */
-    public WebElement findElement(By by){
-        return new WebElement(this, by);
+    public BrowserContext newContext() throws IOException {
+        return newContext(null);
     }
 
     /**
-     * Finds all matching web elements in the tab using the specified selector.
+     * Creates an isolated browser context whose tabs go through their own proxy.
      *
-     * @param by The selector used to locate the elements.
-     * @return A list of {@code WebElement} objects representing the found elements.
-     *         Returns an empty list if no elements are found or if an error occurs.
+     * @param proxyServer Proxy in Chrome format, e.g. {@code socks5://host:port}, or {@code null} for the browser's proxy
+     * @return the new context
+     * @throws IOException if Chrome doesn't create the context
      */
-    public List<WebElement> findElements(By by) {
-        var elements = new ArrayList<WebElement>();
-        
-        // Получаем JavaScript для выбора элементов
-        String jsArrayExpression = by.getMultiJavaScript();
-        
-        // Получаем длину массива элементов
-        String lengthJS = jsArrayExpression + ".length";
-        var lengthResult = executeJSAndGetResult(lengthJS);
-        
-        return lengthResult.map(len -> {
+    public BrowserContext newContext(String proxyServer) throws IOException {
+        try {
+            var command = Target.createBrowserContext().proxyServer(proxyServer);
+            String contextId = getBrowserClient().sendAsync(command, 5).join().browserContextId();
+            BrowserContext context = new BrowserContext(this, contextId);
+            contexts.add(context);
+            logger.info("Created browser context " + contextId);
+            return context;
+        } catch (CompletionException e) {
+            throw new IOException("Can't create browser context", e.getCause());
+        }
+    }
+
+    /**
+     * @return contexts created with {@link #newContext(String)} that are not closed yet
+     */
+    public List<BrowserContext> listContexts() {
+        return new ArrayList<>(contexts);
+    }
+
+    /**
+     * @return the main tab followed by the open tabs created with {@link #newTab(String)}
+     */
+    public List<Tab> listTabs() {
+        List<Tab> result = new ArrayList<>(tabs.size() + 1);
+        result.add(this);
+        result.addAll(tabs);
+        return result;
+    }
+
+    void forgetTab(Tab tab) {
+        tabs.remove(tab);
+        contexts.forEach(context -> context.forgetTab(tab));
+    }
+
+    void forgetContext(BrowserContext context) {
+        contexts.remove(context);
+    }
+
+    /**
+     * Closes the tabs and contexts opened by the previous job and resets the main tab.
+     *
+     * @return duration of every step
+     * @see Tab#resetState()
+     */
+    @Override
+    public ResetReport resetState() {
+        Map<String, Duration> steps = new LinkedHashMap<>();
+        List<String> failedSteps = new ArrayList<>();
+        long start = System.nanoTime();
+        runResetStep("tabs", steps, failedSteps, () -> {
+            contexts.forEach(BrowserContext::close);
+            tabs.forEach(Tab::close);
+            return CompletableFuture.completedFuture(null);
+        });
+        resetSteps(steps, failedSteps);
+        var report = new ResetReport(steps, failedSteps, Duration.ofNanos(System.nanoTime() - start));
+        logger.info(String.format("Reset browser in %d ms: %s", report.total().toMillis(), steps));
+        return report;
+    }
+
+    /**
+     * Closing the main tab ends the driver, same as {@link #exit()}.
+     */
+    @Override
+    public void close() {
+        exit();
+    }
+
+    /**
+     * @return last lines of the Chrome console output, oldest first
+     */
+    public List<String> getConsoleOutput() {
+        return consoleListener != null ? consoleListener.getConsoleMessages() : List.of();
+    }
+
+    /**
+     * Fails the commands waiting for the browser and rejects new ones, see {@link ChromeSupervisor}.
+     */
+    void failConnections(IOException cause) {
+        tabs.forEach(tab -> tab.getSocketClient().fail(cause));
+        if (socketClient != null) {
+            socketClient.fail(cause);
+        }
+        if (browserClient != null) {
+            browserClient.fail(cause);
+        }
+    }
+
+    /**
+     * Kills the failed browser and launches a new one with the same profile, the main tab is reattached.
+     * Tabs and contexts of the old browser are forgotten. An attached driver reconnects to its endpoint instead.
+     * Runs under the same lock as {@link #exit()}.
+     *
+     * @return {@code false} if the driver exited and nothing was launched
+     * @throws IOException if the new browser can't be started, it is killed then
+     */
+    synchronized boolean restart() throws IOException {
+        if (closed.get()) return false;
+        tabs.clear();
+        contexts.clear();
+        if (browserClient != null) {
+            browserClient.closeSession();
+            browserClient = null;
+        }
+        if (socketClient != null) {
+            socketClient.closeSession();
+        }
+        pipeTransport = null;
+        // к чужому браузеру просто переподключаемся
+        if (chrome != null) {
+            destroyProcessTree(chrome);
             try {
-                int arrayLen = Integer.parseInt(len);
-                for (int i = 0; i < arrayLen; i++) {
-                    String elementJS = String.format("%s[%d]", jsArrayExpression, i);
-                    elements.add(new WebElement(this, elementJS));
-                }
-            } catch (NumberFormatException e) {
-                logger.error("Failed to parse array length", e);
+                chrome.waitFor(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while stopping Chrome", ex);
             }
-            return elements;
-        }).orElse(elements);  // Возвращаем пустой список, если длина не была получена
-    }    
-    
+        }
+        try {
+            start();
+        } catch (IOException | RuntimeException e) {
+            // как и в конструкторе, не оставляем запущенный Chrome, к которому не подключились
+            destroyProcessTree(launchedProcess.get());
+            throw e;
+        }
+        return true;
+    }
+
+    /**
+     * Ends the driver, calling it again does nothing.
+     * <p>
+     * A browser launched by this driver is closed with {@code Browser.close}; if it doesn't exit in 5 seconds its process tree
+     * is terminated and then killed, and a cloned profile is deleted. A browser attached with {@link #connect(String)}
+     * or used by other drivers on the same port keeps running, only the tabs of this driver are closed.
+     */
     public void exit(){
+        if (!closed.compareAndSet(false, true)) return;
+        leakTracker.close();
+        supervisor.stop();
+        // перезапуск, который уже идёт, сначала доводится до конца
+        synchronized (this) {
+            closeAll();
+        }
+    }
+
+    private void closeAll() {
+        contexts.forEach(BrowserContext::close);
+        tabs.forEach(Tab::close);
+        if (remoteEndpoint == null && (pipeTransport != null || clonedProfile != null || !isBrowserShared())) {
+            closeBrowser();
+        } else {
+            closeOwnTab();
+        }
+        if (clonedProfile != null) {
+            profileManager.release(clonedProfile);
+        }
+    }
+
+    /**
+     * A launch with the profile of a running browser hands over to it and exits, so the browser may belong
+     * to another driver. Pages other drivers are attached to mean it is still in use.
+     */
+    private boolean isBrowserShared() {
+        if (chrome == null || !chrome.isAlive()) return true;
+        try {
+            return getBrowserClient().sendAsync(Target.getTargets(), 2).join().targetInfos().stream()
+                .anyMatch(target -> target.type().equals("page") && !target.targetId().equals(tabId) && Boolean.TRUE.equals(target.attached()));
+        } catch (IOException | CompletionException ex) {
+            logger.warning("Can't list targets, leaving the browser running: " + ex.getMessage());
+            return true;
+        }
+    }
+
+    private void closeOwnTab() {
+        if (socketClient != null && socketClient.getSessionId().isPresent()) {
+            logger.warning("Closing tab with id = " + tabId);
+            browserClient.send(Target.closeTarget(tabId), 2);
+            browserClient.closeSession();
+            return;
+        }
+        if (browserClient != null) {
+            browserClient.closeSession();
+        }
         if (socketClient != null) {
             socketClient.closeSession();
         }
         if (tabId != null) {
             logger.warning("Closing tab with id = " + tabId);
-            OkHttpClient client = new OkHttpClient().newBuilder().build();
             Request request = new Request.Builder()
-                    .url("http://localhost:9222/json/close/" + this.tabId)
+                    .url("http://localhost:" + debuggingPort + "/json/close/" + this.tabId)
                     .get()
                     .build();
-            try (Response response = client.newCall(request).execute()) {
+            try (Response response = HTTP.newCall(request).execute()) {
                 if (response.body() != null) {
                     logger.warning(response.body().string());
                 }
@@ -439,4 +912,42 @@ public class NoDriver{
             }
         }
     }
+
+    /**
+     * Closes the whole browser: {@code Browser.close}, then SIGTERM and SIGKILL to the process tree if it doesn't exit.
+     */
+    private void closeBrowser(){
+        // дочерние процессы запоминаем заранее: после выхода Chrome они становятся сиротами
+        List<ProcessHandle> children = chrome.descendants().toList();
+        try {
+            WebSocketClient browser = getBrowserClient();
+            browser.send(Browser.close(), 2);
+            browser.closeSession();
+        } catch (IOException ex) {
+            logger.warning("Can't close browser: " + ex.getMessage());
+        }
+        if (socketClient != null) {
+            socketClient.closeSession();
+        }
+        try {
+            if (!chrome.waitFor(5, TimeUnit.SECONDS)) {
+                logger.warning("Chrome didn't exit in 5 seconds, terminating");
+                children.forEach(ProcessHandle::destroy);
+                chrome.destroy();
+                if (!chrome.waitFor(3, TimeUnit.SECONDS)) {
+                    chrome.destroyForcibly().waitFor(5, TimeUnit.SECONDS);
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            chrome.destroyForcibly();
+        }
+        children.stream().filter(ProcessHandle::isAlive).forEach(ProcessHandle::destroyForcibly);
+    }
+
+    private static void destroyProcessTree(Process process) {
+        if (process == null) return;
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
 }
@@ -1,11 +1,117 @@
 package com.vityazev_egor;
 
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
 public class NoDriverOptions {
     private final int windowWidth;
     private final int windowHeight;
     private final String socks5Proxy;
     private final boolean headless;
     private final boolean fullScreen;
+    private final Transport transport;
+    private final boolean flattenSessions;
+    private final int debuggingPort;
+    private final String userDataDir;
+    private final ProfileManager profileManager;
+    private final int maxRestarts;
+    private final Duration restartWindow;
+    private final Set<Tweak> tweaks;
+    private final int rendererProcessLimit;
+
+    /**
+     * Channel the driver uses to talk to Chrome.
+     */
+    public enum Transport {
+        /**
+         * Websocket through Tyrus on the debugging port.
+         */
+        TYRUS,
+        /**
+         * Websocket through {@link java.net.http.WebSocket} on the debugging port.
+         */
+        JDK_WEBSOCKET,
+        /**
+         * {@code --remote-debugging-pipe}: no port, no HTTP discovery. Not available on Windows, {@link #TYRUS} is used there.
+         */
+        PIPE
+    }
+
+    /**
+     * Chrome switch that trades features nobody looks at in automation for CPU and memory.
+     */
+    public enum Tweak {
+        /**
+         * Doesn't load images.
+         */
+        NO_IMAGES("--blink-settings=imagesEnabled=false"),
+        /**
+         * No safe browsing, translate and other background requests of the browser itself.
+         */
+        NO_BACKGROUND_NETWORKING("--disable-background-networking"),
+        /**
+         * Doesn't download component updates (Widevine, certificate lists and so on).
+         */
+        NO_COMPONENT_UPDATE("--disable-component-update"),
+        /**
+         * Doesn't load extensions of the profile.
+         */
+        NO_EXTENSIONS("--disable-extensions"),
+        /**
+         * Renders on the CPU, avoids a GPU process that is useless in headless containers.
+         */
+        NO_GPU("--disable-gpu"),
+        /**
+         * Scrolls in one step instead of animating.
+         */
+        NO_SMOOTH_SCROLLING("--disable-smooth-scrolling"),
+        /**
+         * Keeps background tabs and hidden windows at full priority, so parallel tabs aren't slowed down.
+         */
+        NO_RENDERER_BACKGROUNDING("--disable-renderer-backgrounding", "--disable-backgrounding-occluded-windows"),
+        /**
+         * Doesn't throttle timers of background tabs.
+         */
+        NO_TIMER_THROTTLING("--disable-background-timer-throttling");
+
+        private final List<String> switches;
+
+        Tweak(String... switches) {
+            this.switches = List.of(switches);
+        }
+
+        /**
+         * @return command line switches of the tweak
+         */
+        public List<String> getSwitches() {
+            return switches;
+        }
+    }
+
+    /**
+     * Ready-made sets of {@link Tweak}s.
+     */
+    public enum Preset {
+        /**
+         * Chrome as it is.
+         */
+        DEFAULT(EnumSet.noneOf(Tweak.class), 0),
+        /**
+         * All tweaks and at most 4 renderer processes, for scraping where pages are read rather than looked at.
+         */
+        LEAN(EnumSet.allOf(Tweak.class), 4);
+
+        private final Set<Tweak> tweaks;
+        private final int rendererProcessLimit;
+
+        Preset(Set<Tweak> tweaks, int rendererProcessLimit) {
+            this.tweaks = tweaks;
+            this.rendererProcessLimit = rendererProcessLimit;
+        }
+    }
 
     private NoDriverOptions(Builder builder) {
         this.windowWidth = builder.windowWidth;
@@ -13,6 +119,15 @@ public class NoDriverOptions {
         this.socks5Proxy = builder.socks5Proxy;
         this.headless = builder.headless;
         this.fullScreen = builder.fullScreen;
+        this.transport = builder.transport;
+        this.flattenSessions = builder.flattenSessions;
+        this.debuggingPort = builder.debuggingPort;
+        this.userDataDir = builder.userDataDir;
+        this.profileManager = builder.profileManager;
+        this.maxRestarts = builder.maxRestarts;
+        this.restartWindow = builder.restartWindow;
+        this.tweaks = Collections.unmodifiableSet(EnumSet.copyOf(builder.tweaks));
+        this.rendererProcessLimit = builder.rendererProcessLimit;
     }
 
     /**
@@ -24,6 +139,29 @@ public class NoDriverOptions {
         return new Builder();
     }
 
+    /**
+     * Creates a builder initialized with the values of these options.
+     *
+     * @return a new {@link Builder} instance
+     */
+    public Builder toBuilder() {
+        return new Builder()
+            .setWindowWidth(windowWidth)
+            .setWindowHeight(windowHeight)
+            .setSocks5Proxy(socks5Proxy)
+            .setHeadless(headless)
+            .setFullScreen(fullScreen)
+            .setTransport(transport)
+            .setFlattenSessions(flattenSessions)
+            .setDebuggingPort(debuggingPort)
+            .setUserDataDir(userDataDir)
+            .setProfileManager(profileManager)
+            .setMaxRestarts(maxRestarts)
+            .setRestartWindow(restartWindow)
+            .setTweaks(tweaks)
+            .setRendererProcessLimit(rendererProcessLimit);
+    }
+
     public int getWindowWidth() {
         return windowWidth;
     }
@@ -44,12 +182,57 @@ public class NoDriverOptions {
         return fullScreen;
     }
 
+    public Transport getTransport() {
+        return transport;
+    }
+
+    public boolean isFlattenSessions() {
+        return flattenSessions;
+    }
+
+    public int getDebuggingPort() {
+        return debuggingPort;
+    }
+
+    public String getUserDataDir() {
+        return userDataDir;
+    }
+
+    public ProfileManager getProfileManager() {
+        return profileManager;
+    }
+
+    public int getMaxRestarts() {
+        return maxRestarts;
+    }
+
+    public Duration getRestartWindow() {
+        return restartWindow;
+    }
+
+    public Set<Tweak> getTweaks() {
+        return tweaks;
+    }
+
+    public int getRendererProcessLimit() {
+        return rendererProcessLimit;
+    }
+
     public static class Builder {
         private int windowWidth = 1280;
         private int windowHeight = 1060;
         private String socks5Proxy = null;
         private boolean headless = false;
         private boolean fullScreen = false;
+        private Transport transport = Transport.TYRUS;
+        private boolean flattenSessions = false;
+        private int debuggingPort = 9222;
+        private String userDataDir = null;
+        private ProfileManager profileManager = null;
+        private int maxRestarts = 0;
+        private Duration restartWindow = Duration.ofMinutes(10);
+        private Set<Tweak> tweaks = EnumSet.noneOf(Tweak.class);
+        private int rendererProcessLimit = 0;
 
         /**
          * Sets the browser window width in pixels.
@@ -106,6 +289,132 @@ public class NoDriverOptions {
             return this;
         }
 
+        /**
+         * Sets the channel used to talk to Chrome.
+         *
+         * @param transport Transport to use, {@link Transport#TYRUS} by default.
+         * @return this builder
+         */
+        public Builder setTransport(Transport transport) {
+            this.transport = transport;
+            return this;
+        }
+
+        /**
+         * Drives pages through flattened sessions over one browser-level connection instead of a websocket per page.
+         * Always enabled for {@link Transport#PIPE}.
+         *
+         * @param flattenSessions Whether to connect to the browser endpoint and attach to pages.
+         * @return this builder
+         */
+        public Builder setFlattenSessions(boolean flattenSessions) {
+            this.flattenSessions = flattenSessions;
+            return this;
+        }
+
+        /**
+         * Sets the remote debugging port. {@code 0} lets Chrome pick a free port,
+         * so several browsers can run on one host.
+         *
+         * @param debuggingPort Port number, 9222 by default.
+         * @return this builder
+         */
+        public Builder setDebuggingPort(int debuggingPort) {
+            this.debuggingPort = debuggingPort;
+            return this;
+        }
+
+        /**
+         * Sets the Chrome profile directory. Two browsers can't share one profile.
+         *
+         * @param userDataDir Path to the profile, {@code ~/nodriverData} by default.
+         * @return this builder
+         */
+        public Builder setUserDataDir(String userDataDir) {
+            this.userDataDir = userDataDir;
+            return this;
+        }
+
+        /**
+         * Launches Chrome with a fresh clone of the manager's golden profile instead of {@code userDataDir}.
+         * The clone is deleted when the driver exits.
+         *
+         * @param profileManager Manager of the golden profile, {@code null} to disable cloning.
+         * @return this builder
+         */
+        public Builder setProfileManager(ProfileManager profileManager) {
+            this.profileManager = profileManager;
+            return this;
+        }
+
+        /**
+         * Relaunches Chrome when it or the page crashes, at most {@code maxRestarts} times per restart window.
+         *
+         * @param maxRestarts Number of restarts, {@code 0} (default) to only fail the pending commands.
+         * @return this builder
+         * @see ChromeSupervisor
+         */
+        public Builder setMaxRestarts(int maxRestarts) {
+            this.maxRestarts = maxRestarts;
+            return this;
+        }
+
+        /**
+         * Sets the sliding window the restart budget applies to.
+         *
+         * @param restartWindow Window length, 10 minutes by default.
+         * @return this builder
+         */
+        public Builder setRestartWindow(Duration restartWindow) {
+            this.restartWindow = restartWindow;
+            return this;
+        }
+
+        /**
+         * Applies the tweaks and the renderer process limit of a preset, replacing the ones set before.
+         *
+         * @param preset Preset to apply, {@link Preset#DEFAULT} by default.
+         * @return this builder
+         */
+        public Builder setPreset(Preset preset) {
+            this.tweaks = EnumSet.copyOf(preset.tweaks);
+            this.rendererProcessLimit = preset.rendererProcessLimit;
+            return this;
+        }
+
+        /**
+         * Sets the Chrome switches to launch with, replacing the ones set before.
+         *
+         * @param tweaks Tweaks to apply, none by default.
+         * @return this builder
+         */
+        public Builder setTweaks(Set<Tweak> tweaks) {
+            this.tweaks = tweaks.isEmpty() ? EnumSet.noneOf(Tweak.class) : EnumSet.copyOf(tweaks);
+            return this;
+        }
+
+        /**
+         * Adds Chrome switches to the ones set before, e.g. on top of a preset.
+         *
+         * @param tweaks Tweaks to add.
+         * @return this builder
+         */
+        public Builder addTweaks(Tweak... tweaks) {
+            this.tweaks.addAll(List.of(tweaks));
+            return this;
+        }
+
+        /**
+         * Limits the number of renderer processes; sites over the limit share processes.
+         *
+         * @param rendererProcessLimit Maximum number of renderers, {@code 0} (default) for Chrome's own limit.
+         * @return this builder
+         */
+        public Builder setRendererProcessLimit(int rendererProcessLimit) {
+            this.rendererProcessLimit = rendererProcessLimit;
+            return this;
+        }
+
         /**
          * Builds an immutable {@link NoDriverOptions} instance.
          *
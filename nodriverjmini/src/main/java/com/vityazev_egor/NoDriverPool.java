@@ -0,0 +1,402 @@
+package com.vityazev_egor;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.vityazev_egor.Core.CustomLogger;
+
+/**
+ * Pool of warm browsers leased out to jobs one at a time.
+ * <p>
+ * Every browser has its own profile and a debugging port picked by Chrome, so any number of them can run on one host.
+ * Browsers are launched in the background when the pool is built, {@link #acquire()} waits only if all of them are busy.
+ * A browser is replaced with a fresh one when it failed a health check or served {@code maxUsesPerBrowser} leases.
+ *
+ * <pre>{@code
+ * try (NoDriverPool pool = NoDriverPool.builder().setSize(4).build()) {
+ *     NoDriver driver = pool.acquire();
+ *     try {
+ *         driver.getNavigation().loadUrlAndWait("https://example.com", 10);
+ *     } finally {
+ *         pool.release(driver);
+ *     }
+ * }
+ * }</pre>
+ */
+public class NoDriverPool implements AutoCloseable {
+    private static final long RELAUNCH_DELAY_SECONDS = 5;
+
+    private final CustomLogger logger = new CustomLogger(NoDriverPool.class.getName());
+    private final NoDriverOptions options;
+    private final int size;
+    private final int maxUsesPerBrowser;
+    private final boolean resetOnRelease;
+    private final Path profilesDir;
+
+    private final LinkedBlockingQueue<PooledBrowser> idle = new LinkedBlockingQueue<>();
+    private final ConcurrentHashMap<NoDriver, PooledBrowser> leased = new ConcurrentHashMap<>();
+    private final ExecutorService launcher;
+    private final ScheduledExecutorService scheduler;
+    private volatile boolean closed = false;
+
+    private final AtomicInteger starting = new AtomicInteger();
+    private final AtomicLong launched = new AtomicLong();
+    private final AtomicLong launchFailures = new AtomicLong();
+    private final AtomicLong recycled = new AtomicLong();
+    private final AtomicLong failedHealthChecks = new AtomicLong();
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong acquireWaitNanos = new AtomicLong();
+
+    private static final class PooledBrowser {
+        private final NoDriver driver;
+        private final int slot;
+        private int uses = 0;
+
+        private PooledBrowser(NoDriver driver, int slot) {
+            this.driver = driver;
+            this.slot = slot;
+        }
+    }
+
+    /**
+     * Snapshot of the pool state and counters since the pool was built.
+     *
+     * @param size Number of browsers the pool keeps
+     * @param idle Browsers ready to be acquired
+     * @param leased Browsers currently used by callers
+     * @param starting Browsers being launched or relaunched
+     * @param launched Browsers launched successfully
+     * @param launchFailures Failed launches
+     * @param recycled Browsers replaced because of max uses or failed health checks
+     * @param failedHealthChecks Health checks a browser didn't pass
+     * @param acquired Successful {@code acquire} calls
+     * @param averageAcquireWaitMillis Average time callers waited for a browser
+     */
+    public record Metrics(int size, int idle, int leased, int starting, long launched, long launchFailures,
+                          long recycled, long failedHealthChecks, long acquired, double averageAcquireWaitMillis) {
+    }
+
+    private NoDriverPool(Builder builder) {
+        this.options = builder.options;
+        this.size = builder.size;
+        this.maxUsesPerBrowser = builder.maxUsesPerBrowser;
+        this.resetOnRelease = builder.resetOnRelease;
+        this.profilesDir = builder.profilesDir;
+        this.launcher = Executors.newFixedThreadPool(size, runnable -> {
+            Thread thread = new Thread(runnable, "nodriver-pool-launcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "nodriver-pool-health");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        for (int slot = 0; slot < size; slot++) {
+            launch(slot);
+        }
+        long interval = builder.healthCheckInterval.toMillis();
+        if (interval > 0) {
+            scheduler.scheduleWithFixedDelay(this::checkIdleBrowsers, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Creates a new builder with default pool settings.
+     *
+     * @return a new {@link Builder} instance
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Waits until a healthy browser is available and leases it.
+     *
+     * @return driver that must be handed back with {@link #release(NoDriver)}
+     * @throws InterruptedException if the thread was interrupted while waiting
+     * @throws IllegalStateException if the pool is closed
+     */
+    public NoDriver acquire() throws InterruptedException {
+        Optional<NoDriver> driver;
+        do {
+            driver = acquire(Duration.ofDays(1));
+        } while (driver.isEmpty());
+        return driver.get();
+    }
+
+    /**
+     * Leases a healthy browser, waiting at most {@code timeout} for one to become available.
+     *
+     * @param timeout Maximum time to wait
+     * @return Optional containing the driver, or empty if no browser became available in time
+     * @throws InterruptedException if the thread was interrupted while waiting
+     * @throws IllegalStateException if the pool is closed
+     */
+    public Optional<NoDriver> acquire(Duration timeout) throws InterruptedException {
+        long start = System.nanoTime();
+        long deadline = start + timeout.toNanos();
+        while (true) {
+            if (closed) throw new IllegalStateException("Pool is closed");
+            PooledBrowser browser = idle.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (browser == null) {
+                return Optional.empty();
+            }
+            if (!isHealthy(browser)) {
+                failedHealthChecks.incrementAndGet();
+                recycle(browser);
+                continue;
+            }
+            leased.put(browser.driver, browser);
+            acquired.incrementAndGet();
+            acquireWaitNanos.addAndGet(System.nanoTime() - start);
+            return Optional.of(browser.driver);
+        }
+    }
+
+    /**
+     * Hands a leased browser back. The browser is reset with {@link NoDriver#resetState()} for the next job,
+     * or replaced if it reached the use limit, its process died or the reset failed.
+     *
+     * @param driver Driver returned by {@link #acquire()}
+     */
+    public void release(NoDriver driver) {
+        PooledBrowser browser = leased.remove(driver);
+        if (browser == null) {
+            logger.warning("Released driver doesn't belong to the pool or was already released");
+            return;
+        }
+        browser.uses++;
+        if (closed) {
+            destroy(browser);
+        } else if (maxUsesPerBrowser > 0 && browser.uses >= maxUsesPerBrowser) {
+            logger.info(String.format("Browser #%d served %d leases, relaunching", browser.slot, browser.uses));
+            recycle(browser);
+        } else if (!browser.driver.getChrome().isAlive()) {
+            failedHealthChecks.incrementAndGet();
+            recycle(browser);
+        } else if (resetOnRelease && !browser.driver.resetState().isSuccessful()) {
+            logger.warning("Browser #" + browser.slot + " wasn't reset, relaunching");
+            recycle(browser);
+        } else {
+            idle.offer(browser);
+        }
+    }
+
+    /**
+     * @return current pool state and counters
+     */
+    public Metrics getMetrics() {
+        long acquiredCount = acquired.get();
+        double averageWait = acquiredCount == 0 ? 0 : acquireWaitNanos.get() / 1_000_000.0 / acquiredCount;
+        return new Metrics(size, idle.size(), leased.size(), starting.get(), launched.get(), launchFailures.get(),
+            recycled.get(), failedHealthChecks.get(), acquiredCount, averageWait);
+    }
+
+    private boolean isHealthy(PooledBrowser browser) {
+        return browser.driver.getChrome().isAlive()
+            && !browser.driver.getSupervisor().isFailed()
+            && browser.driver.executeJSAndGetResult("1").filter("1"::equals).isPresent();
+    }
+
+    // проверяем только простаивающие браузеры, занятые проверит acquire после возврата;
+    // берём по одному, чтобы остальные оставались доступны для acquire во время проверки
+    private void checkIdleBrowsers() {
+        for (int checks = idle.size(); checks > 0; checks--) {
+            PooledBrowser browser = idle.poll();
+            if (browser == null) {
+                return;
+            }
+            if (closed) {
+                destroy(browser);
+            } else if (isHealthy(browser)) {
+                idle.offer(browser);
+            } else {
+                failedHealthChecks.incrementAndGet();
+                recycle(browser);
+            }
+        }
+    }
+
+    private void recycle(PooledBrowser browser) {
+        recycled.incrementAndGet();
+        starting.incrementAndGet();
+        submit(() -> {
+            destroy(browser);
+            launchNow(browser.slot);
+        }, browser.slot);
+    }
+
+    private void launch(int slot) {
+        starting.incrementAndGet();
+        submit(() -> launchNow(slot), slot);
+    }
+
+    private void submit(Runnable task, int slot) {
+        try {
+            launcher.execute(task);
+        } catch (RejectedExecutionException ex) {
+            starting.decrementAndGet();
+            logger.warning("Pool is closed, browser #" + slot + " won't be launched");
+        }
+    }
+
+    /**
+     * Launches the browser of the slot on the calling thread. Expects {@code starting} to be incremented by the caller.
+     */
+    private void launchNow(int slot) {
+        NoDriverOptions.Builder slotOptions = options.toBuilder().setDebuggingPort(0);
+        // с менеджером профилей каждый запуск получает свежий клон эталона
+        if (options.getProfileManager() == null) {
+            slotOptions.setUserDataDir(profilesDir.resolve("browser-" + slot).toString());
+        }
+        try {
+            PooledBrowser browser = new PooledBrowser(new NoDriver(slotOptions.build()), slot);
+            launched.incrementAndGet();
+            if (closed) {
+                destroy(browser);
+            } else {
+                idle.offer(browser);
+            }
+        } catch (Exception ex) {
+            launchFailures.incrementAndGet();
+            logger.error("Can't launch browser #" + slot, ex);
+            if (!closed) {
+                // не крутим запуск в цикле, если Chrome не стартует
+                starting.incrementAndGet();
+                scheduler.schedule(() -> submit(() -> launchNow(slot), slot), RELAUNCH_DELAY_SECONDS, TimeUnit.SECONDS);
+            }
+        } finally {
+            starting.decrementAndGet();
+        }
+    }
+
+    private void destroy(PooledBrowser browser) {
+        // exit() сам закрывает Chrome и при необходимости добивает дерево процессов
+        try {
+            browser.driver.exit();
+        } catch (Exception ex) {
+            logger.warning("Can't close browser #" + browser.slot + ": " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Stops all browsers, including leased ones, and the pool threads.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        scheduler.shutdownNow();
+        launcher.shutdown();
+        try {
+            if (!launcher.awaitTermination(60, TimeUnit.SECONDS)) {
+                logger.warning("Browser launches didn't finish in 60 seconds");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        List<PooledBrowser> browsers = new ArrayList<>(leased.values());
+        leased.clear();
+        idle.drainTo(browsers);
+        browsers.forEach(this::destroy);
+    }
+
+    public static class Builder {
+        private NoDriverOptions options = NoDriverOptions.builder().build();
+        private int size = Runtime.getRuntime().availableProcessors();
+        private int maxUsesPerBrowser = 0;
+        private boolean resetOnRelease = true;
+        private Duration healthCheckInterval = Duration.ofSeconds(30);
+        private Path profilesDir = Path.of(System.getProperty("user.home"), "nodriverPool");
+
+        /**
+         * Sets the number of browsers kept by the pool.
+         *
+         * @param size Number of browsers, the number of CPU cores by default.
+         * @return this builder
+         */
+        public Builder setSize(int size) {
+            if (size < 1) throw new IllegalArgumentException("Pool size must be positive");
+            this.size = size;
+            return this;
+        }
+
+        /**
+         * Sets the options every browser is launched with. The debugging port and profile are set by the pool,
+         * unless the options have a {@link ProfileManager}: then every launch gets a clone of its golden profile.
+         *
+         * @param options Browser options.
+         * @return this builder
+         */
+        public Builder setOptions(NoDriverOptions options) {
+            this.options = options;
+            return this;
+        }
+
+        /**
+         * Sets how many leases a browser serves before it is relaunched.
+         *
+         * @param maxUsesPerBrowser Number of leases, {@code 0} (default) for no limit.
+         * @return this builder
+         */
+        public Builder setMaxUsesPerBrowser(int maxUsesPerBrowser) {
+            this.maxUsesPerBrowser = maxUsesPerBrowser;
+            return this;
+        }
+
+        /**
+         * Wipes cookies, storage, cache and extra tabs of a browser when it is released.
+         *
+         * @param resetOnRelease Whether to reset released browsers, {@code true} by default.
+         * @return this builder
+         */
+        public Builder setResetOnRelease(boolean resetOnRelease) {
+            this.resetOnRelease = resetOnRelease;
+            return this;
+        }
+
+        /**
+         * Sets how often idle browsers are checked. Browsers are also checked on every {@code acquire}.
+         *
+         * @param healthCheckInterval Check interval, 30 seconds by default, {@link Duration#ZERO} to disable.
+         * @return this builder
+         */
+        public Builder setHealthCheckInterval(Duration healthCheckInterval) {
+            this.healthCheckInterval = healthCheckInterval;
+            return this;
+        }
+
+        /**
+         * Sets the directory the profiles of the browsers are kept in, one subdirectory per browser.
+         *
+         * @param profilesDir Path to the directory, {@code ~/nodriverPool} by default.
+         * @return this builder
+         */
+        public Builder setProfilesDir(String profilesDir) {
+            this.profilesDir = Path.of(profilesDir);
+            return this;
+        }
+
+        /**
+         * Builds the pool and starts launching the browsers in the background.
+         *
+         * @return a new pool
+         */
+        public NoDriverPool build() {
+            return new NoDriverPool(this);
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.vityazev_egor;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import com.vityazev_egor.Core.CustomLogger;
+
+/**
+ * Clones a warmed "golden" Chrome profile for every browser, so parallel browsers start with its cookies,
+ * extensions and disk cache without locking the golden profile or each other.
+ * <p>
+ * On filesystems with reflinks (btrfs, xfs, APFS) the whole profile is cloned copy-on-write and costs almost nothing.
+ * Elsewhere only write-once parts (installed extensions) are hard-linked and the rest is copied:
+ * Chrome rewrites cookies, LevelDB and cache entries in place, a shared inode would leak changes into the golden profile.
+ * <p>
+ * Clones are deleted when their driver exits, on JVM shutdown, and clones left by crashed processes
+ * are removed when the next manager is built.
+ *
+ * <pre>{@code
+ * ProfileManager profiles = ProfileManager.builder()
+ *     .setGoldenProfile(System.getProperty("user.home") + "/nodriverData")
+ *     .build();
+ * NoDriver driver = new NoDriver(NoDriverOptions.builder()
+ *     .setProfileManager(profiles)
+ *     .setDebuggingPort(0)
+ *     .build());
+ * }</pre>
+ */
+public class ProfileManager {
+    private static final String CLONE_PREFIX = "clone-";
+    // файлы блокировки профиля конкретным процессом Chrome
+    private static final Set<String> SKIPPED_FILES = Set.of("SingletonLock", "SingletonSocket", "SingletonCookie", "DevToolsActivePort", "lockfile");
+    // каталоги, файлы в которых Chrome только создаёт и удаляет, но не переписывает
+    private static final Set<String> WRITE_ONCE_DIRS = Set.of("Extensions", "component_crx_cache");
+
+    private static final CustomLogger logger = new CustomLogger(ProfileManager.class.getName());
+    // клоны всех менеджеров процесса, их удаляет один общий shutdown hook
+    private static final Set<Path> clones = ConcurrentHashMap.newKeySet();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> clones.forEach(ProfileManager::deleteTree), "nodriver-profile-gc"));
+    }
+
+    private final Path goldenProfile;
+    private final Path clonesDir;
+    private final String owner = Long.toString(ProcessHandle.current().pid());
+    private final AtomicInteger cloneCounter = new AtomicInteger();
+    // узнаём при первом клонировании
+    private volatile Boolean reflinkSupported;
+
+    private ProfileManager(Builder builder) throws IOException {
+        this.goldenProfile = builder.goldenProfile.toAbsolutePath().normalize();
+        // по умолчанию рядом с эталоном: reflink работает только в пределах одной файловой системы
+        this.clonesDir = builder.clonesDir != null
+            ? builder.clonesDir.toAbsolutePath().normalize()
+            : goldenProfile.resolveSibling(goldenProfile.getFileName() + "-clones");
+        Files.createDirectories(goldenProfile);
+        Files.createDirectories(clonesDir);
+        removeStaleClones();
+    }
+
+    /**
+     * Creates a new builder with default settings.
+     *
+     * @return a new {@link Builder} instance
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return path of the golden profile; launch a driver with it as user data dir to warm it up
+     */
+    public Path getGoldenProfile() {
+        return goldenProfile;
+    }
+
+    /**
+     * Clones the golden profile into a new directory.
+     *
+     * @return path of the clone, to be handed back with {@link #release(Path)}
+     * @throws IOException if the profile can't be cloned
+     */
+    public Path createClone() throws IOException {
+        if (Files.exists(goldenProfile.resolve("SingletonLock"), LinkOption.NOFOLLOW_LINKS)) {
+            logger.warning("Golden profile is used by a running Chrome, the clone may be inconsistent");
+        }
+        Path clone = clonesDir.resolve(CLONE_PREFIX + owner + "-" + cloneCounter.incrementAndGet());
+        clones.add(clone);
+        long start = System.nanoTime();
+        try {
+            if (!reflinkClone(clone)) {
+                linkOrCopyClone(clone);
+            }
+        } catch (IOException ex) {
+            deleteClone(clone);
+            throw ex;
+        }
+        Files.deleteIfExists(clone.resolve("DevToolsActivePort"));
+        logger.info(String.format("Cloned profile to %s in %d ms", clone, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+        return clone;
+    }
+
+    /**
+     * Deletes a clone. Call it only after the browser that used the clone has exited. Paths that are not clones
+     * of this manager, such as the golden profile, are never deleted.
+     *
+     * @param clone Path returned by {@link #createClone()}
+     */
+    public void release(Path clone) {
+        if (!isClone(clone)) {
+            logger.warning("Not a profile clone, leaving it in place: " + clone);
+            return;
+        }
+        deleteClone(clone);
+    }
+
+    /**
+     * @return whether clones are made with reflinks, known after the first clone
+     */
+    boolean usesReflinks() {
+        return Boolean.TRUE.equals(reflinkSupported);
+    }
+
+    // только каталоги clone-* прямо в clonesDir, и никогда эталон или каталог, в котором он лежит
+    private boolean isClone(Path path) {
+        Path absolute = path.toAbsolutePath().normalize();
+        return clonesDir.equals(absolute.getParent())
+            && absolute.getFileName().toString().startsWith(CLONE_PREFIX)
+            && !goldenProfile.startsWith(absolute);
+    }
+
+    private boolean reflinkClone(Path clone) throws IOException {
+        if (Boolean.FALSE.equals(reflinkSupported)) return false;
+        String os = System.getProperty("os.name").toLowerCase();
+        List<String> command;
+        if (os.contains("linux")) {
+            command = List.of("cp", "-a", "--reflink=always", goldenProfile.toString(), clone.toString());
+        } else if (os.contains("mac")) {
+            command = List.of("cp", "-c", "-R", goldenProfile.toString(), clone.toString());
+        } else {
+            reflinkSupported = false;
+            return false;
+        }
+        try {
+            Process cp = new ProcessBuilder(command).redirectErrorStream(true).start();
+            String output = new String(cp.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            if (cp.waitFor() == 0) {
+                reflinkSupported = true;
+                removeLocks(clone);
+                return true;
+            }
+            logger.info("Reflinks are not available, profiles will be copied: " + output.trim());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while cloning profile", ex);
+        }
+        // неудачный cp мог оставить часть файлов
+        deleteTree(clone);
+        reflinkSupported = false;
+        return false;
+    }
+
+    private void linkOrCopyClone(Path clone) throws IOException {
+        Files.walkFileTree(goldenProfile, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(clone.resolve(goldenProfile.relativize(dir)));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (attrs.isSymbolicLink() || SKIPPED_FILES.contains(file.getFileName().toString())) {
+                    return FileVisitResult.CONTINUE;
+                }
+                Path relative = goldenProfile.relativize(file);
+                Path target = clone.resolve(relative);
+                if (isWriteOnce(relative)) {
+                    try {
+                        Files.createLink(target, file);
+                        return FileVisitResult.CONTINUE;
+                    } catch (IOException | UnsupportedOperationException ex) {
+                        // другая файловая система или нет поддержки ссылок - копируем
+                    }
+                }
+                Files.copy(file, target, StandardCopyOption.COPY_ATTRIBUTES);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException ex) {
+                // Chrome мог удалить файл, пока мы обходили профиль
+                logger.warning("Skipped " + file + ": " + ex.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static boolean isWriteOnce(Path relative) {
+        for (Path element : relative) {
+            if (WRITE_ONCE_DIRS.contains(element.toString())) return true;
+        }
+        return false;
+    }
+
+    private static void removeLocks(Path clone) throws IOException {
+        for (String name : SKIPPED_FILES) {
+            Files.deleteIfExists(clone.resolve(name));
+        }
+    }
+
+    /**
+     * Removes clones whose owning JVM is no longer running.
+     */
+    private void removeStaleClones() throws IOException {
+        try (Stream<Path> entries = Files.list(clonesDir)) {
+            entries.filter(this::isClone)
+                .filter(path -> !isOwnerAlive(path.getFileName().toString()))
+                .forEach(ProfileManager::deleteClone);
+        }
+    }
+
+    private static boolean isOwnerAlive(String cloneName) {
+        String[] parts = cloneName.substring(CLONE_PREFIX.length()).split("-");
+        try {
+            return ProcessHandle.of(Long.parseLong(parts[0])).map(ProcessHandle::isAlive).orElse(false);
+        } catch (NumberFormatException ex) {
+            return true;
+        }
+    }
+
+    private static void deleteClone(Path clone) {
+        clones.remove(clone);
+        deleteTree(clone);
+    }
+
+    private static void deleteTree(Path clone) {
+        if (!Files.exists(clone, LinkOption.NOFOLLOW_LINKS)) return;
+        try (Stream<Path> files = Files.walk(clone)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException ex) {
+            logger.warning("Can't delete profile clone " + clone + ": " + ex.getMessage());
+        }
+    }
+
+    public static class Builder {
+        private Path goldenProfile = Path.of(System.getProperty("user.home"), "nodriverData");
+        private Path clonesDir = null;
+
+        /**
+         * Sets the warmed profile the clones are made from.
+         *
+         * @param goldenProfile Path to the profile, {@code ~/nodriverData} by default.
+         * @return this builder
+         */
+        public Builder setGoldenProfile(String goldenProfile) {
+            this.goldenProfile = Path.of(goldenProfile);
+            return this;
+        }
+
+        /**
+         * Sets the directory the clones are created in. Reflinks need it on the same filesystem as the golden profile.
+         *
+         * @param clonesDir Path to the directory, {@code <golden profile>-clones} next to the golden profile by default.
+         * @return this builder
+         */
+        public Builder setClonesDir(String clonesDir) {
+            this.clonesDir = Path.of(clonesDir);
+            return this;
+        }
+
+        /**
+         * Builds the manager and removes clones left by processes that are no longer running.
+         *
+         * @return a new manager
+         * @throws IOException if the directories can't be created
+         */
+        public ProfileManager build() throws IOException {
+            return new ProfileManager(this);
+        }
+    }
+}
@@ -0,0 +1,532 @@
+package com.vityazev_egor;
+
+import java.awt.Dimension;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vityazev_egor.Core.CDPCommandBuilder;
+import com.vityazev_egor.Core.CDPMessage;
+import com.vityazev_egor.Core.CustomLogger;
+import com.vityazev_egor.Core.HelperRuntime;
+import com.vityazev_egor.Core.Shared;
+import com.vityazev_egor.Core.WebSocketClient;
+import com.vityazev_egor.Core.Driver.Input;
+import com.vityazev_egor.Core.Driver.Misc;
+import com.vityazev_egor.Core.Driver.Navigation;
+import com.vityazev_egor.Core.WebElements.By;
+import com.vityazev_egor.Core.WebElements.WebElement;
+import com.vityazev_egor.Protocol.Network;
+import com.vityazev_egor.Protocol.Page;
+import com.vityazev_egor.Protocol.Runtime;
+import com.vityazev_egor.Protocol.Storage;
+import com.vityazev_egor.Protocol.Target;
+
+import lombok.Getter;
+
+/**
+ * Page of the browser with its own CDP session and its own {@link Navigation}, {@link Input} and {@link Misc}.
+ * Tabs of one {@link NoDriver} share the Chrome process and a single browser-level connection,
+ * so they can be worked in parallel without launching a browser per page.
+ * <p>
+ * {@link NoDriver} itself is the tab Chrome opened at startup.
+ *
+ * <pre>{@code
+ * Tab tab = driver.newTab("https://example.com");
+ * tab.getNavigation().waitFullLoad(10);
+ * tab.getTitle().ifPresent(System.out::println);
+ * tab.close();
+ * }</pre>
+ */
+public class Tab {
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final CustomLogger logger = new CustomLogger(Tab.class.getName());
+    private final NoDriver driver;
+    @Getter
+    protected WebSocketClient socketClient;
+    // targetId вкладки в CDP
+    protected String tabId;
+
+    // создаётся при первом вызове и заново, если сменился socketClient
+    private HelperRuntime helpers;
+
+    @Getter
+    private final Input input;
+    @Getter
+    private final Navigation navigation;
+    @Getter
+    private final Misc misc;
+
+    /**
+     * Main tab, the session is set by {@link NoDriver} once Chrome is started.
+     */
+    Tab() {
+        this(null, null, null);
+    }
+
+    Tab(NoDriver driver, WebSocketClient socketClient, String tabId) {
+        this.driver = driver;
+        this.socketClient = socketClient;
+        this.tabId = tabId;
+        this.input = new Input(this);
+        this.navigation = new Navigation(this);
+        this.misc = new Misc(this);
+    }
+
+    /**
+     * @return driver that owns the browser process of this tab
+     */
+    public NoDriver getDriver() {
+        return driver;
+    }
+
+    /**
+     * @return CDP target id of the tab
+     */
+    public String getTabId() {
+        return tabId;
+    }
+
+    /**
+     * Brings the tab to the front, e.g. before clicking through {@link com.vityazev_egor.Core.Driver.XDO}.
+     *
+     * @return {@code true} if Chrome activated the tab
+     */
+    public boolean activate() {
+        try {
+            getDriver().getBrowserClient().sendAsync(Target.activateTarget(tabId), 2).join();
+            return true;
+        } catch (Exception ex) {
+            logger.error("Can't activate tab " + tabId + ": " + (ex instanceof CompletionException ? ex.getCause().getMessage() : ex.getMessage()));
+            return false;
+        }
+    }
+
+    /**
+     * Closes the tab and its CDP session. The browser and other tabs stay open.
+     */
+    public void close() {
+        driver.forgetTab(this);
+        try {
+            driver.getBrowserClient().send(Target.closeTarget(tabId), 2);
+        } catch (Exception ex) {
+            logger.warning("Failed to close Chrome tab: " + ex.getMessage());
+        }
+        socketClient.closeSession();
+    }
+
+    /**
+     * Time each step of {@link #resetState()} took.
+     *
+     * @param steps Step name to its duration, in execution order
+     * @param failedSteps Steps Chrome answered with an error or didn't answer in time
+     * @param total Duration of the whole reset
+     */
+    public record ResetReport(Map<String, Duration> steps, List<String> failedSteps, Duration total) {
+        public boolean isSuccessful() {
+            return failedSteps.isEmpty();
+        }
+    }
+
+    /**
+     * Wipes what a previous job left in the tab, so a warm tab can be reused instead of relaunching Chrome:
+     * dismisses an open dialog, unregisters service workers and clears storage of the origins loaded in the page,
+     * clears cookies and HTTP cache, then navigates to {@code about:blank}.
+     * <p>
+     * Cookies and cache are cleared for the whole browser context the tab belongs to.
+     *
+     * @return duration of every step
+     */
+    public ResetReport resetState() {
+        Map<String, Duration> steps = new LinkedHashMap<>();
+        List<String> failedSteps = new ArrayList<>();
+        long start = System.nanoTime();
+        resetSteps(steps, failedSteps);
+        var report = new ResetReport(steps, failedSteps, Duration.ofNanos(System.nanoTime() - start));
+        logger.info(String.format("Reset tab %s in %d ms: %s", tabId, report.total().toMillis(), steps));
+        return report;
+    }
+
+    void resetSteps(Map<String, Duration> steps, List<String> failedSteps) {
+        // открытый alert блокирует страницу, без диалога Chrome отвечает ошибкой - это нормально
+        runResetStep("dialog", steps, failedSteps,
+            () -> socketClient.sendAsync(Page.handleJavaScriptDialog(false), 2).exceptionally(ex -> null));
+        Set<String> origins = new LinkedHashSet<>();
+        runResetStep("frameTree", steps, failedSteps,
+            () -> socketClient.sendAsync(Page.getFrameTree(), 2).thenAccept(result -> collectOrigins(result.frameTree(), origins)));
+        runResetStep("serviceWorkers", steps, failedSteps, () -> clearOrigins(origins, "service_workers"));
+        runResetStep("cookies", steps, failedSteps, () -> socketClient.sendAsync(Network.clearBrowserCookies(), 2));
+        runResetStep("storage", steps, failedSteps, () -> clearOrigins(origins, "all"));
+        runResetStep("cache", steps, failedSteps, () -> socketClient.sendAsync(Network.clearBrowserCache(), 5));
+        runResetStep("navigate", steps, failedSteps, () -> socketClient.sendAsync(Page.navigate("about:blank"), 5));
+    }
+
+    static void runResetStep(String name, Map<String, Duration> steps, List<String> failedSteps, Supplier<CompletableFuture<?>> step) {
+        long start = System.nanoTime();
+        try {
+            step.get().join();
+        } catch (CompletionException ex) {
+            failedSteps.add(name);
+        }
+        steps.put(name, Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    private CompletableFuture<Void> clearOrigins(Set<String> origins, String storageTypes) {
+        return CompletableFuture.allOf(origins.stream()
+            .map(origin -> socketClient.sendAsync(Storage.clearDataForOrigin(origin, storageTypes), 5))
+            .toArray(CompletableFuture[]::new));
+    }
+
+    private static void collectOrigins(Page.FrameTree tree, Set<String> origins) {
+        String origin = tree.frame().securityOrigin();
+        // about:blank и data: имеют непрозрачный origin, чистить нечего
+        if (origin != null && origin.startsWith("http")) {
+            origins.add(origin);
+        }
+        if (tree.childFrames() != null) {
+            tree.childFrames().forEach(child -> collectOrigins(child, origins));
+        }
+    }
+
+    public Optional<Double> getCurrentPageTime(){
+        return getCurrentPageTimeAsync().join();
+    }
+
+    public CompletableFuture<Optional<Double>> getCurrentPageTimeAsync(){
+        return executeJSAndGetResultAsync("performance.now()").thenApply(sDouble -> sDouble.map(Double::parseDouble));
+    }
+
+    public Optional<String> getHtml(){
+        return getHtmlAsync().join();
+    }
+
+    public CompletableFuture<Optional<String>> getHtmlAsync(){
+        return executeJSAndGetResultAsync("document.documentElement.outerHTML");
+    }
+
+    /**
+     * Streams the HTML of the current page straight into a file.
+     * Large responses are spooled to disk by the socket client, so unlike {@link #getHtml()}
+     * the page is never held in memory as a single string.
+     *
+     * @param path           File to write the HTML to (UTF-8).
+     * @param timeOutSeconds Maximum time to wait for the response in seconds.
+     * @return {@code true} if the HTML was written, {@code false} otherwise.
+     */
+    public boolean saveHtml(Path path, Integer timeOutSeconds){
+        CDPCommandBuilder command = CDPCommandBuilder.create("Runtime.evaluate")
+            .addParam("expression", "document.documentElement.outerHTML");
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            var response = socketClient.sendMessageAsync(command, timeOutSeconds).join();
+            return response.writeValueTo(writer, "result", "result", "value");
+        } catch (Exception ex) {
+            logger.error("Can't save html of page", ex);
+            return false;
+        }
+    }
+
+    public Optional<String> getTitle(){
+        return getTitleAsync().join();
+    }
+
+    public CompletableFuture<Optional<String>> getTitleAsync(){
+        return executeJSAndGetResultAsync("document.title");
+    }
+
+    public Optional<String> getCurrentUrl(){
+        return getCurrentUrlAsync().join();
+    }
+
+    public CompletableFuture<Optional<String>> getCurrentUrlAsync(){
+        return executeJSAndGetResultAsync("window.location.href");
+    }
+
+    public Optional<Dimension> getViewPortSize() {
+        return getViewPortSizeAsync().join();
+    }
+
+    public CompletableFuture<Optional<Dimension>> getViewPortSizeAsync() {
+        return socketClient.batch()
+            .add(CDPCommandBuilder.create("Runtime.evaluate").addParam("expression", "window.innerWidth"))
+            .add(CDPCommandBuilder.create("Runtime.evaluate").addParam("expression", "window.innerHeight"))
+            .executeAsync()
+            .thenApply(results -> {
+                var portWidth = results.get(0).flatMap(CDPCommandBuilder::getJsResult);
+                var portHeight = results.get(1).flatMap(CDPCommandBuilder::getJsResult);
+                // Если оба результата присутствуют, создаем и возвращаем Optional<Dimension>
+                if (portWidth.isPresent() && portHeight.isPresent()) {
+                    return Optional.of(new Dimension(Integer.parseInt(portWidth.get()), Integer.parseInt(portHeight.get())));
+                } else {
+                    return Optional.<Dimension>empty();
+                }
+            });
+    }
+
+    public void emulateKey(){
+        CDPCommandBuilder keyDown = CDPCommandBuilder.create("Input.dispatchKeyEvent")
+            .addParam("type", "keyDown")
+            .addParam("key", "End")
+            .addParam("code", "End")
+            .addParam("keyCode", 35)
+            .addParam("modifiers", 0)
+            .addParam("autoRepeat", false)
+            .addParam("isKeypad", false)
+            .addParam("isSystemKey", true)
+            .addParam("location", 0);
+
+        CDPCommandBuilder keyUp = CDPCommandBuilder.create("Input.dispatchKeyEvent")
+            .addParam("type", "keyUp")
+            .addParam("key", "End")
+            .addParam("code", "End")
+            .addParam("keyCode", 35)
+            .addParam("modifiers", 0)
+            .addParam("autoRepeat", false)
+            .addParam("isKeypad", false)
+            .addParam("isSystemKey", true)
+            .addParam("location", 0);
+
+        socketClient.batch()
+            .add(keyDown)
+            .add(keyUp)
+            .execute();
+    }
+
+    /**
+     * Executes the given JavaScript code in the tab.
+     *
+     * @param js JavaScript code to execute.
+     */
+    public void executeJS(String js){
+        CDPCommandBuilder command = CDPCommandBuilder.create("Runtime.evaluate")
+            .addParam("expression", js);
+        socketClient.sendAndWaitResult(2, command);
+    }
+
+    /**
+     * Executes the given JavaScript code in the tab without waiting for the response.
+     *
+     * @param js JavaScript code to execute.
+     * @return A future that is completed when the browser has evaluated the code.
+     */
+    public CompletableFuture<Void> executeJSAsync(String js){
+        CDPCommandBuilder command = CDPCommandBuilder.create("Runtime.evaluate")
+            .addParam("expression", js);
+        return socketClient.sendMessageAsync(command, 2).thenApply(response -> null);
+    }
+
+    /**
+     * Executes the given JavaScript code in the tab and returns the result.
+     * Make sure that your JavaScript code returns only one string!
+     *
+     * @param js JavaScript code to execute.
+     * @return An {@code Optional<String>} containing the result of the JavaScript execution,
+     *         or {@code Optional.empty()} if no result is available.
+     */
+    public Optional<String> executeJSAndGetResult(String js){
+        return executeJSAndGetResultAsync(js).join();
+    }
+
+    /**
+     * Executes the given JavaScript code in the tab without blocking the calling thread.
+     * The returned future never completes exceptionally: timeouts and connection errors
+     * are reported as {@code Optional.empty()}, the same way as in {@link #executeJSAndGetResult(String)}.
+     *
+     * @param js JavaScript code to execute.
+     * @return A future with the result of the JavaScript execution.
+     */
+    public CompletableFuture<Optional<String>> executeJSAndGetResultAsync(String js){
+        CDPCommandBuilder command = CDPCommandBuilder.create("Runtime.evaluate")
+            .addParam("expression", js);
+        return socketClient.sendMessageAsync(command, 2)
+            .thenApply(CDPMessage::getJsResult)
+            .exceptionally(ex -> {
+                logger.error("Can't execute js: " + ex.getMessage());
+                return Optional.empty();
+            });
+    }
+
+    /**
+     * @return element helpers injected into the documents of the current session
+     */
+    public synchronized HelperRuntime getHelpers(){
+        if (helpers == null || helpers.getClient() != socketClient) {
+            helpers = new HelperRuntime(socketClient);
+        }
+        return helpers;
+    }
+
+    /**
+     * Releases the remote handles of all elements found in this tab, see {@link WebElement}.
+     * The elements stay usable and are looked up again when used.
+     */
+    public void releaseElements(){
+        socketClient.sendAsync(Runtime.releaseObjectGroup(WebElement.OBJECT_GROUP), 2)
+            .exceptionally(ex -> {
+                logger.warning("Can't release element handles: " + ex.getMessage());
+                return null;
+            })
+            .join();
+    }
+
+    /**
+     * Returns single web element in the browser using the specified selector.
+     * After that you should make sure that element exists by calling .isExist method
+     *
+     * @param by The selector used to locate the element.
+     * @return A {@code WebElement} representing the found element.
+     */
+    public WebElement findElement(By by){
+        return new WebElement(this, by);
+    }
+
+    /**
+     * Finds all matching web elements in the tab using the specified selector.
+     * The query is run once and every match comes back as a handle (see {@link WebElement}),
+     * so the cost doesn't grow with the number of later calls on the elements.
+     *
+     * @param by The selector used to locate the elements.
+     * @return A list of {@code WebElement} objects representing the found elements.
+     *         Returns an empty list if no elements are found or if an error occurs.
+     */
+    public List<WebElement> findElements(By by) {
+        return findElementsAsync(by).join();
+    }
+
+    /**
+     * Asynchronous version of {@link #findElements(By)}: one {@code Runtime.evaluate} returning an array of the matches
+     * and one {@code Runtime.getProperties} listing their handles.
+     *
+     * @param by The selector used to locate the elements.
+     * @return A future with the found elements, an empty list if none are found or if an error occurs.
+     */
+    public CompletableFuture<List<WebElement>> findElementsAsync(By by) {
+        HelperRuntime helpers = getHelpers();
+        WebSocketClient client = helpers.getClient();
+        String expression = String.format("typeof %1$s==='object'?%1$s.findAll(%2$s):Array.from(%3$s)",
+            helpers.getName(), by.getMultiHelperArgs(), multiJavaScript(by));
+        return helpers.install()
+            .thenCompose(ignored -> client.sendAsync(Runtime.evaluate(expression).objectGroup(WebElement.OBJECT_GROUP), 2))
+            .thenCompose(result -> {
+                if (result.exceptionDetails() != null || result.result() == null || result.result().objectId() == null) {
+                    return CompletableFuture.completedFuture(List.<WebElement>of());
+                }
+                String arrayId = result.result().objectId();
+                return client.sendAsync(Runtime.getProperties(arrayId).ownProperties(true), 2)
+                    .thenApply(properties -> toElements(by, properties))
+                    // сам массив больше не нужен, элементы держатся своими handle
+                    .whenComplete((elements, ex) -> client.sendAsync(Runtime.releaseObject(arrayId), 2).exceptionally(error -> null));
+            })
+            .exceptionally(ex -> {
+                logger.error("Can't find elements: " + ex.getMessage());
+                return List.of();
+            })
+            .thenApply(ArrayList::new);
+    }
+
+    private List<WebElement> toElements(By by, Runtime.GetPropertiesResult properties) {
+        var elements = new ArrayList<WebElement>();
+        if (properties.result() == null) return elements;
+        for (var property : properties.result()) {
+            // кроме индексов в свойствах массива есть length
+            if (!property.name().matches("\\d+") || property.value() == null || property.value().objectId() == null) continue;
+            elements.add(new WebElement(this, by, Integer.parseInt(property.name()), property.value().objectId()));
+        }
+        return elements;
+    }
+
+    /**
+     * Reads a property of all matching elements with one call, e.g. {@code innerText} or {@code href}.
+     *
+     * @param by The selector used to locate the elements.
+     * @param property Name of the DOM property
+     * @return Values in document order, empty for {@code null}/{@code undefined}; an empty list if nothing matched or on error.
+     */
+    public List<Optional<String>> readProperty(By by, String property) {
+        return readAllAsync(by, property, false).join();
+    }
+
+    /**
+     * Asynchronous version of {@link #readProperty(By, String)}.
+     *
+     * @param by The selector used to locate the elements.
+     * @param property Name of the DOM property
+     * @return A future with the values in document order.
+     */
+    public CompletableFuture<List<Optional<String>>> readPropertyAsync(By by, String property) {
+        return readAllAsync(by, property, false);
+    }
+
+    /**
+     * Reads an attribute of all matching elements with one call.
+     *
+     * @param by The selector used to locate the elements.
+     * @param attributeName The name of the attribute (e.g., "src", "alt", "href").
+     * @return Values in document order, empty where the attribute is missing; an empty list if nothing matched or on error.
+     */
+    public List<Optional<String>> readAttribute(By by, String attributeName) {
+        return readAllAsync(by, attributeName, true).join();
+    }
+
+    /**
+     * Asynchronous version of {@link #readAttribute(By, String)}.
+     *
+     * @param by The selector used to locate the elements.
+     * @param attributeName The name of the attribute.
+     * @return A future with the values in document order.
+     */
+    public CompletableFuture<List<Optional<String>>> readAttributeAsync(By by, String attributeName) {
+        return readAllAsync(by, attributeName, true);
+    }
+
+    private CompletableFuture<List<Optional<String>>> readAllAsync(By by, String name, boolean attribute) {
+        String fallbackJs = String.format(
+            "JSON.stringify(Array.from(%s,function(e){var v=%s;return v==null?null:''+v;}))",
+            multiJavaScript(by), attribute ? "e.getAttribute(" + Shared.jsString(name) + ")" : "e[" + Shared.jsString(name) + "]");
+        HelperRuntime helpers = getHelpers();
+        return by.getHelperLocator()
+            .map(locator -> helpers.call("readAll", List.of(name, attribute, locator.get(0), locator.get(1)), fallbackJs, 5))
+            .orElseGet(() -> helpers.call("readAll", Shared.jsString(name) + "," + attribute + "," + by.getMultiHelperArgs(), fallbackJs, 5))
+            .thenApply(result -> result.map(this::parseValues).orElseGet(List::of))
+            .exceptionally(ex -> {
+                logger.error("Can't read " + name + " of elements: " + ex.getMessage());
+                return List.of();
+            });
+    }
+
+    private List<Optional<String>> parseValues(String json) {
+        var values = new ArrayList<Optional<String>>();
+        try {
+            for (JsonNode value : JSON.readTree(json)) {
+                values.add(value.isNull() ? Optional.empty() : Optional.of(value.asText()));
+            }
+        } catch (JsonProcessingException ex) {
+            logger.error("Can't parse values of elements", ex);
+        }
+        return values;
+    }
+
+    private static String multiJavaScript(By by) {
+        try {
+            return by.getMultiJavaScript();
+        } catch (UnsupportedOperationException ex) {
+            // By.id находит не больше одного элемента
+            return "[" + by.getJavaScript() + "].filter(Boolean)";
+        }
+    }
+}
@@ -0,0 +1,218 @@
+(function (name) {
+    // встроенные функции запоминаются при установке, до скриптов страницы, которые могут их подменить
+    var win = window;
+    var doc = document;
+    var apply = Reflect.apply;
+    var hasOwn = Object.prototype.hasOwnProperty;
+    if (apply(hasOwn, win, [name])) {
+        return true;
+    }
+    var defineProperty = Object.defineProperty;
+    var freeze = Object.freeze;
+    var descriptor = Object.getOwnPropertyDescriptor;
+    var querySelector = Document.prototype.querySelector;
+    var querySelectorAll = Document.prototype.querySelectorAll;
+    var getElementById = Document.prototype.getElementById;
+    var getElementsByClassName = Document.prototype.getElementsByClassName;
+    var getElementsByName = Document.prototype.getElementsByName;
+    var elementFromPoint = Document.prototype.elementFromPoint;
+    var getBoundingClientRect = Element.prototype.getBoundingClientRect;
+    var getAttribute = Element.prototype.getAttribute;
+    var elementMatches = Element.prototype.matches;
+    var firstElementChild = descriptor(Element.prototype, 'firstElementChild').get;
+    var nextElementSibling = descriptor(Element.prototype, 'nextElementSibling').get;
+    var textContent = descriptor(Node.prototype, 'textContent').get;
+    var getComputedStyle = win.getComputedStyle;
+    var trim = String.prototype.trim;
+    var indexOf = String.prototype.indexOf;
+    var split = String.prototype.split;
+    var arrayIndexOf = Array.prototype.indexOf;
+    var stringify = JSON.stringify;
+    var round = Math.round;
+    var ElementType = Element;
+
+    // индекс текста документа строится заново, только если MutationObserver видел изменения
+    var textIndex = REPLACE_TEXT_INDEX;
+    var MutationObserverType = typeof MutationObserver === 'function' ? MutationObserver : null;
+    var observe = MutationObserverType ? MutationObserverType.prototype.observe : null;
+    var takeRecords = MutationObserverType ? MutationObserverType.prototype.takeRecords : null;
+    var currentIndex = null;
+    var observer = null;
+
+    function getTextIndex() {
+        // takeRecords забирает изменения, колбэк о которых ещё не вызван
+        if (currentIndex && apply(takeRecords, observer, []).length === 0) {
+            return currentIndex;
+        }
+        currentIndex = null;
+        var index = textIndex.build(doc);
+        if (!observer && MutationObserverType) {
+            observer = new MutationObserverType(function () {
+                currentIndex = null;
+            });
+            apply(observe, observer, [doc, { childList: true, subtree: true, characterData: true }]);
+        }
+        if (observer) {
+            currentIndex = index;
+        }
+        return index;
+    }
+
+    function findAllText(target, exact) {
+        return textIndex.find(getTextIndex(), target, exact, false);
+    }
+
+    // первое совпадение всегда берётся из индекса, так результат тот же, что и без помощников
+    function findText(target, exact) {
+        return textIndex.find(getTextIndex(), target, exact, true)[0] || null;
+    }
+
+    function toArray(list) {
+        var result = [];
+        for (var i = 0; list && i < list.length; i++) {
+            result[i] = list[i];
+        }
+        return result;
+    }
+
+    // элемент или коллекция, переданные выражением, либо вид локатора и его значение
+    function findAll(kind, value) {
+        if (typeof kind !== 'string') {
+            return kind instanceof ElementType ? [kind] : toArray(kind);
+        }
+        switch (kind) {
+            case 'id': {
+                var element = apply(getElementById, doc, [value]);
+                return element ? [element] : [];
+            }
+            case 'css': return toArray(apply(querySelectorAll, doc, [value]));
+            case 'class': return toArray(apply(getElementsByClassName, doc, [value]));
+            case 'name': return toArray(apply(getElementsByName, doc, [value]));
+            case 'text': return findAllText(value, true);
+            case 'textContains': return findAllText(value, false);
+            default: return [];
+        }
+    }
+
+    // index выбирает одно из совпадений, для выражения он передаётся вторым аргументом
+    function resolve(kind, value, index) {
+        if (typeof kind !== 'string') {
+            index = value;
+        }
+        if (index) {
+            return findAll(kind, value)[index] || null;
+        }
+        if (typeof kind !== 'string') {
+            return kind instanceof ElementType ? kind : (kind && kind[0]) || null;
+        }
+        switch (kind) {
+            case 'id': return apply(getElementById, doc, [value]);
+            case 'css': return apply(querySelector, doc, [value]);
+            case 'class': return apply(getElementsByClassName, doc, [value])[0] || null;
+            case 'name': return apply(getElementsByName, doc, [value])[0] || null;
+            case 'text': return findText(value, true);
+            case 'textContains': return findText(value, false);
+            default: return null;
+        }
+    }
+
+    function textMatches(element, target, exact) {
+        var text = apply(textContent, element, []);
+        if (text == null) {
+            return false;
+        }
+        text = apply(trim, text, []);
+        return exact ? text === target : apply(indexOf, text, [target]) !== -1;
+    }
+
+    // подходит ли элемент под локатор сейчас; для текста он должен быть самым вложенным совпадением,
+    // а если совпадает какой-то потомок, то совпадает и ребёнок на пути к нему
+    function matches(element, kind, value) {
+        switch (kind) {
+            case 'id': return apply(getAttribute, element, ['id']) === value;
+            case 'css': return apply(elementMatches, element, [value]);
+            case 'class': {
+                var classes = apply(split, apply(trim, apply(getAttribute, element, ['class']) || '', []), [/\s+/]);
+                var wanted = apply(split, apply(trim, value, []), [/\s+/]);
+                for (var i = 0; i < wanted.length; i++) {
+                    if (wanted[i] && apply(arrayIndexOf, classes, [wanted[i]]) === -1) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            case 'name': return apply(getAttribute, element, ['name']) === value;
+            case 'text':
+            case 'textContains': {
+                var exact = kind === 'text';
+                if (!textMatches(element, value, exact)) {
+                    return false;
+                }
+                for (var child = apply(firstElementChild, element, []); child; child = apply(nextElementSibling, child, [])) {
+                    if (textMatches(child, value, exact)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            default: return true;
+        }
+    }
+
+    // свойство или атрибут всех совпадений одним вызовом, JSON-массив строк
+    function readAll(name, attribute, kind, value) {
+        var elements = findAll(kind, value);
+        var result = [];
+        for (var i = 0; i < elements.length; i++) {
+            var item = attribute ? apply(getAttribute, elements[i], [name]) : elements[i][name];
+            result[i] = item == null ? null : '' + item;
+        }
+        return stringify(result);
+    }
+
+    function rect(element, center) {
+        if (!element) {
+            return stringify({ error: "Element not found" });
+        }
+        var box = apply(getBoundingClientRect, element, []);
+        return center
+            ? stringify({ x: round(box.left + box.width / 2), y: round(box.top + box.height / 2) })
+            : stringify({ x: round(box.width), y: round(box.height) });
+    }
+
+    var helpers = freeze({
+        find: resolve,
+        findAll: findAll,
+        matches: matches,
+        readAll: readAll,
+        exists: function (kind, value, index) {
+            return !!resolve(kind, value, index);
+        },
+        pos: function (kind, value, index) {
+            return rect(resolve(kind, value, index), true);
+        },
+        size: function (kind, value, index) {
+            return rect(resolve(kind, value, index), false);
+        },
+        clickable: function (kind, value, index) {
+            var element = resolve(kind, value, index);
+            if (!element) {
+                return false;
+            }
+            var style = apply(getComputedStyle, win, [element]);
+            var isVisible = style.display !== 'none' && style.visibility !== 'hidden' && style.opacity > 0;
+            var box = apply(getBoundingClientRect, element, []);
+            var isUnderOtherElement = apply(elementFromPoint, doc, [box.left + 1, box.top + 1]) !== element;
+            return isVisible && !isUnderOtherElement && !element.disabled;
+        }
+    });
+
+    try {
+        // не перечисляется и не перезаписывается, страница его не видит в Object.keys(window)
+        defineProperty(win, name, { value: helpers });
+        return true;
+    } catch (e) {
+        // страница запретила расширять window
+        return false;
+    }
+})('REPLACE_NAME');
@@ -0,0 +1,152 @@
+(function () {
+    // поиск элементов по тексту за линейное время: один обход TreeWalker склеивает весь текст body в строку,
+    // и textContent каждого элемента — это отрезок [start, end) этой строки
+    var apply = Reflect.apply;
+    var descriptor = Object.getOwnPropertyDescriptor;
+    var createTreeWalker = Document.prototype.createTreeWalker;
+    var firstChild = TreeWalker.prototype.firstChild;
+    var nextSibling = TreeWalker.prototype.nextSibling;
+    var parentNode = TreeWalker.prototype.parentNode;
+    var getBody = descriptor(Document.prototype, 'body').get;
+    var nodeType = descriptor(Node.prototype, 'nodeType').get;
+    var data = descriptor(CharacterData.prototype, 'data').get;
+    var join = Array.prototype.join;
+    var indexOf = String.prototype.indexOf;
+    var startsWith = String.prototype.startsWith;
+    var charCodeAt = String.prototype.charCodeAt;
+    var Int32 = Int32Array;
+    var SHOW_ELEMENT = 0x1;
+    var SHOW_TEXT = 0x4;
+
+    // те же символы, что убирает String.prototype.trim
+    function isSpace(code) {
+        return code === 32 || (code >= 9 && code <= 13) || code === 160 || code === 0x1680
+            || (code >= 0x2000 && code <= 0x200a) || code === 0x2028 || code === 0x2029
+            || code === 0x202f || code === 0x205f || code === 0x3000 || code === 0xfeff;
+    }
+
+    function build(doc) {
+        var index = { elements: [], starts: [], ends: [], lasts: [], text: '', nextSolid: null, lastSolid: null };
+        var root = apply(getBody, doc, []);
+        if (!root) {
+            return index;
+        }
+        var elements = index.elements, starts = index.starts, ends = index.ends, lasts = index.lasts;
+        var walker = apply(createTreeWalker, doc, [root, SHOW_ELEMENT | SHOW_TEXT]);
+        var parts = [];
+        var offset = 0;
+        // открытые элементы, в которые ещё может попасть текст
+        var open = [];
+        var depth = 0;
+
+        function close() {
+            var element = open[--depth];
+            ends[element] = offset;
+            lasts[element] = elements.length - 1;
+        }
+
+        var node = apply(firstChild, walker, []);
+        while (node) {
+            if (apply(nodeType, node, []) === 1) {
+                starts[elements.length] = offset;
+                open[depth++] = elements.length;
+                elements[elements.length] = node;
+                var child = apply(firstChild, walker, []);
+                if (child) {
+                    node = child;
+                    continue;
+                }
+                close();
+            } else {
+                var text = apply(data, node, []);
+                parts[parts.length] = text;
+                offset += text.length;
+            }
+            var next = apply(nextSibling, walker, []);
+            while (!next) {
+                var parent = apply(parentNode, walker, []);
+                if (!parent || parent === root) {
+                    break;
+                }
+                close();
+                next = apply(nextSibling, walker, []);
+            }
+            node = next;
+        }
+        index.text = apply(join, parts, ['']);
+        return index;
+    }
+
+    // для точного совпадения: первый непробельный символ с позиции i и последний до позиции i
+    function prepareTrim(index) {
+        var text = index.text;
+        var length = text.length;
+        var nextSolid = new Int32(length + 1);
+        var lastSolid = new Int32(length + 1);
+        nextSolid[length] = length;
+        for (var i = length - 1; i >= 0; i--) {
+            nextSolid[i] = isSpace(apply(charCodeAt, text, [i])) ? nextSolid[i + 1] : i;
+        }
+        lastSolid[0] = -1;
+        for (var j = 0; j < length; j++) {
+            lastSolid[j + 1] = isSpace(apply(charCodeAt, text, [j])) ? lastSolid[j] : j;
+        }
+        index.nextSolid = nextSolid;
+        index.lastSolid = lastSolid;
+    }
+
+    // элементы, чей textContent после trim равен target (exact) или содержит его, кроме предков других совпадений,
+    // в порядке документа; с first ищется только первый из них
+    function find(index, target, exact, first) {
+        var elements = index.elements, starts = index.starts, ends = index.ends, lasts = index.lasts, text = index.text;
+        var length = target.length;
+        var result = [];
+        // совпадение, про которое ещё не известно, есть ли совпадения среди его потомков
+        var pending = -1;
+        var occurrences = null;
+        var occurrence = 0;
+        if (exact && !index.nextSolid) {
+            prepareTrim(index);
+        }
+        if (!exact && length > 0) {
+            occurrences = [];
+            for (var at = apply(indexOf, text, [target, 0]); at !== -1; at = apply(indexOf, text, [target, at + 1])) {
+                occurrences[occurrences.length] = at;
+            }
+        }
+        for (var i = 0; i < elements.length; i++) {
+            var start = starts[i], end = ends[i], matches;
+            if (exact) {
+                var solid = index.nextSolid[start];
+                matches = solid >= end
+                    ? length === 0
+                    : index.lastSolid[end] - solid + 1 === length && apply(startsWith, text, [target, solid]);
+            } else if (occurrences) {
+                // элементы идут в прямом порядке, их start не убывает
+                while (occurrence < occurrences.length && occurrences[occurrence] < start) {
+                    occurrence++;
+                }
+                matches = occurrence < occurrences.length && occurrences[occurrence] + length <= end;
+            } else {
+                matches = true;
+            }
+            if (!matches) {
+                continue;
+            }
+            // потомки идут сразу за предком: если новое совпадение вне поддерева прошлого, прошлое самое вложенное
+            if (pending !== -1 && i > lasts[pending]) {
+                result[result.length] = elements[pending];
+                if (first) {
+                    return result;
+                }
+            }
+            pending = i;
+        }
+        if (pending !== -1) {
+            result[result.length] = elements[pending];
+        }
+        return result;
+    }
+
+    return { build: build, find: find };
+})()
@@ -3,16 +3,24 @@ package com.vityazev_egor;
 import com.vityazev_egor.Core.WebElements.WebElement;
 import org.junit.jupiter.api.Test;
 
+import com.vityazev_egor.Core.CDPCommandBuilder;
+import com.vityazev_egor.Core.LambdaWaitTask;
+import com.vityazev_egor.Core.LeakTracker;
 import com.vityazev_egor.Core.Shared;
 import com.vityazev_egor.Core.WebElements.By;
 
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 class ApplicationTest {
 
@@ -52,6 +60,21 @@ class ApplicationTest {
         assertTrue(result);
     }
 
+    @Test
+    void testStreamingSave() throws IOException{
+        NoDriver d = new NoDriver(NoDriverOptions.builder().build());
+        d.getNavigation().loadUrlAndWait("https://en.wikipedia.org/wiki/List_of_countries_by_population", 15);
+        Path htmlPath = Paths.get("page.html");
+        Path screenPath = Paths.get("page.png");
+        boolean htmlSaved = d.saveHtml(htmlPath, 10);
+        boolean screenSaved = d.getMisc().saveScreenshot(screenPath, 10);
+        d.exit();
+        assertTrue(htmlSaved);
+        assertTrue(screenSaved);
+        assertTrue(Files.size(htmlPath) > 0);
+        assertTrue(Files.size(screenPath) > 0);
+    }
+
     @Test
     void testViewPort() throws IOException{
         NoDriver d = new NoDriver(NoDriverOptions.builder().build());
@@ -132,6 +155,194 @@ class ApplicationTest {
         System.out.println("Closed second tab");
     }
 
+    @Test
+    void testElementHelpers() throws IOException{
+        NoDriver driver = new NoDriver(NoDriverOptions.builder().build());
+        driver.getNavigation().loadUrlAndWait("https://example.com", 10);
+        // страница портит глобальные функции, помощники должны работать на своих ссылках
+        driver.executeJS("document.querySelector = () => null; JSON.stringify = () => '{}'");
+        var heading = driver.findElement(By.cssSelector("h1"));
+        assertTrue(heading.isExists());
+        assertTrue(heading.getSize().map(size -> size.width > 0).orElse(false));
+        assertTrue(driver.findElement(By.textContains("Example Domain")).getPosition().isPresent());
+        // новое совпадение раньше в документе находится так же, как без помощников
+        assertTrue(driver.findElement(By.text("Example Domain")).isExists());
+        driver.executeJS("document.body.insertAdjacentHTML('afterbegin', '<p id=first>Example Domain</p>')");
+        assertTrue(driver.findElement(By.text("Example Domain")).getAttribute("id").orElse("").equals("first"));
+        // повторяемая проба идёт через общую функцию помощников и возвращает результат на настоящей странице
+        for (int i = 0; i < 3; i++) {
+            assertTrue(driver.getHelpers().call("pos", List.of("css", "h1"), "null", 2).join().isPresent());
+        }
+        assertTrue(driver.executeJSAndGetResult("String(Object.keys(window).some(key => key.startsWith('__nd')))").orElse("").equals("false"));
+        driver.exit();
+    }
+
+    @Test
+    void testElementHandles() throws IOException{
+        NoDriver driver = new NoDriver(NoDriverOptions.builder().build());
+        driver.getNavigation().loadUrlAndWait("https://example.com", 10);
+        var heading = driver.findElement(By.text("Example Domain"));
+        assertTrue(heading.getText().orElse("").equals("Example Domain"));
+        // тот же узел, найденный один раз, поиск по тексту не повторяется
+        driver.executeJS("document.querySelector('h1').setAttribute('data-nd', 'kept')");
+        assertTrue(heading.getAttribute("data-nd").orElse("").equals("kept"));
+
+        // узел на месте, но текст уже не совпадает с локатором
+        driver.executeJS("document.querySelector('h1').textContent = 'Changed'");
+        assertFalse(heading.isExists());
+        driver.executeJS("document.querySelector('h1').textContent = 'Example Domain'");
+        assertTrue(heading.isExists());
+
+        heading.removeFromDOM();
+        assertFalse(heading.isExists());
+        driver.executeJS("document.body.insertAdjacentHTML('afterbegin', '<h1>Example Domain</h1>')");
+        assertTrue(heading.isExists());
+        driver.releaseElements();
+        assertTrue(heading.getPosition().isPresent());
+        driver.exit();
+    }
+
+    @Test
+    void testFindElementsBulk() throws IOException{
+        NoDriver driver = new NoDriver(NoDriverOptions.builder().build());
+        driver.getNavigation().loadUrlAndWait("https://example.com", 10);
+        driver.executeJS("document.body.insertAdjacentHTML('beforeend', '<a class=\"nd\" href=\"/1\">one</a><a class=\"nd\">two</a>')");
+
+        var links = driver.findElements(By.className("nd"));
+        assertTrue(links.size() == 2);
+        assertTrue(links.get(1).getText().orElse("").equals("two"));
+        assertTrue(driver.readProperty(By.className("nd"), "innerText").equals(List.of(Optional.of("one"), Optional.of("two"))));
+        assertTrue(driver.readAttribute(By.className("nd"), "href").equals(List.of(Optional.of("/1"), Optional.empty())));
+        assertTrue(driver.findElements(By.id("missing")).isEmpty());
+        driver.exit();
+    }
+
+    @Test
+    void testTextSelector() throws IOException{
+        NoDriver driver = new NoDriver(NoDriverOptions.builder().build());
+        driver.getNavigation().loadUrlAndWait("https://example.com", 10);
+        driver.executeJS("document.body.insertAdjacentHTML('beforeend', '<div><p>Don\\'t <b>stop</b></p></div>')");
+        // совпадает самый вложенный элемент, текст собирается из нескольких узлов
+        assertTrue(driver.findElement(By.text("Don't stop")).getHTMLContent().orElse("").equals("Don't <b>stop</b>"));
+        assertTrue(driver.findElements(By.textContains("stop")).size() == 1);
+
+        // индекс текста сбрасывается после изменения страницы
+        driver.executeJS("document.querySelector('b').textContent = 'go'");
+        assertTrue(driver.findElement(By.text("Don't go")).isExists());
+        assertFalse(driver.findElement(By.textContains("stop")).isExists());
+        driver.exit();
+    }
+
+    @Test
+    void testTabs() throws IOException{
+        NoDriver driver = new NoDriver(NoDriverOptions.builder().build());
+        Tab bing = driver.newTab("https://bing.com");
+        Tab yandex = driver.newTab();
+        yandex.getNavigation().loadUrlAndWait("https://ya.ru", 10);
+        assertTrue(bing.getNavigation().waitFullLoad(10));
+        assertTrue(driver.listTabs().size() == 3);
+        assertTrue(bing.getCurrentUrl().orElse("").contains("bing"));
+        assertTrue(yandex.activate());
+
+        bing.close();
+        assertTrue(driver.listTabs().size() == 2);
+        driver.exit();
+    }
+
+    @Test
+    void testResetState() throws IOException{
+        NoDriver driver = new NoDriver(NoDriverOptions.builder().build());
+        driver.getNavigation().loadUrlAndWait("https://example.com", 10);
+        driver.executeJS("localStorage.setItem('nd', '1'); document.cookie = 'nd=1'");
+        driver.newTab();
+
+        var report = driver.resetState();
+        System.out.println(report);
+        assertTrue(report.isSuccessful());
+        assertTrue(driver.listTabs().size() == 1);
+        assertTrue(driver.getCurrentUrl().orElse("").equals("about:blank"));
+
+        driver.getNavigation().loadUrlAndWait("https://example.com", 10);
+        assertTrue(driver.executeJSAndGetResult("String(localStorage.getItem('nd'))").orElse("").equals("null"));
+        assertTrue(driver.executeJSAndGetResult("document.cookie").orElse("").isEmpty());
+        driver.exit();
+    }
+
+    @Test
+    void testCrashRestart() throws IOException{
+        NoDriver driver = new NoDriver(NoDriverOptions.builder().setMaxRestarts(1).build());
+        driver.getNavigation().loadUrl("chrome://crash");
+        var restarted = new LambdaWaitTask(() -> driver.getSupervisor().getRestarts() == 1);
+        assertTrue(restarted.execute(30, 200));
+        assertTrue(driver.executeJSAndGetResult("1+1").orElse("").equals("2"));
+        driver.exit();
+    }
+
+    @Test
+    void testConnect() throws IOException{
+        NoDriver owner = new NoDriver(NoDriverOptions.builder().setDebuggingPort(0).setUserDataDir(Files.createTempDirectory("nodriver-connect-").toString()).build());
+        NoDriver worker = NoDriver.connect("127.0.0.1:" + owner.getDebuggingPort());
+        assertTrue(worker.isAttached());
+        worker.getNavigation().loadUrlAndWait("https://example.com", 10);
+        assertTrue(worker.getTitle().orElse("").contains("Example"));
+        worker.exit();
+        // браузер продолжает работать после выхода подключившегося драйвера
+        assertTrue(owner.getChrome().isAlive());
+        assertTrue(owner.executeJSAndGetResult("1+1").orElse("").equals("2"));
+        owner.exit();
+    }
+
+    @Test
+    void testTeardown() throws IOException{
+        Process chrome;
+        List<ProcessHandle> children;
+        try (NoDriver driver = new NoDriver(NoDriverOptions.builder().setDebuggingPort(0).setUserDataDir(Files.createTempDirectory("nodriver-teardown-").toString()).build())) {
+            chrome = driver.getChrome();
+            children = chrome.descendants().toList();
+        }
+        assertFalse(chrome.isAlive());
+        assertTrue(children.stream().noneMatch(ProcessHandle::isAlive));
+    }
+
+    @Test
+    void testLeakedDriverIsCleanedUp() throws IOException{
+        // -Dnodriver.leakDetection=true задаётся в настройках surefire
+        assumeTrue(LeakTracker.ENABLED);
+        int leaked = LeakTracker.getLeakedCount();
+        Process chrome = launchAndForget();
+        var killed = new LambdaWaitTask(() -> {
+            System.gc();
+            return !chrome.isAlive();
+        });
+        assertTrue(killed.execute(30, 200));
+        assertTrue(LeakTracker.getLeakedCount() > leaked);
+    }
+
+    private static Process launchAndForget() throws IOException{
+        // драйвер не закрывается и после выхода из метода достижим только через слушатели Chrome
+        return new NoDriver(NoDriverOptions.builder().setDebuggingPort(0).setUserDataDir(Files.createTempDirectory("nodriver-leak-").toString()).build()).getChrome();
+    }
+
+    @Test
+    void testContexts() throws IOException{
+        NoDriver driver = new NoDriver(NoDriverOptions.builder().build());
+        BrowserContext first = driver.newContext();
+        BrowserContext second = driver.newContext();
+        Tab firstTab = first.newTab();
+        Tab secondTab = second.newTab();
+        firstTab.getNavigation().loadUrlAndWait("https://example.com", 10);
+        secondTab.getNavigation().loadUrlAndWait("https://example.com", 10);
+
+        firstTab.executeJSAndGetResult("localStorage.setItem('nd', 'first')");
+        assertTrue(firstTab.executeJSAndGetResult("localStorage.getItem('nd')").orElse("").equals("first"));
+        // хранилище второго контекста не видит данные первого
+        assertTrue(secondTab.executeJSAndGetResult("String(localStorage.getItem('nd'))").orElse("").equals("null"));
+
+        first.close();
+        assertTrue(driver.listContexts().size() == 1);
+        driver.exit();
+    }
+
     @Test
     void testJs() throws IOException{
         NoDriver d = new NoDriver(NoDriverOptions.builder().build());
@@ -141,6 +352,17 @@ class ApplicationTest {
         System.out.println(title.get());
     }
 
+    @Test
+    void testPageLoadEvent() throws IOException{
+        NoDriver d = new NoDriver(NoDriverOptions.builder().build());
+        d.getSocketClient().sendCommand(CDPCommandBuilder.create("Page.enable").build());
+        var loadEvent = d.getSocketClient().getEventBus().next("Page.loadEventFired");
+        d.getNavigation().loadUrl("https://bing.com");
+        var params = loadEvent.orTimeout(10, TimeUnit.SECONDS).join();
+        d.exit();
+        assertTrue(params.has("timestamp"));
+    }
+
     @Test
     void testGetCurrentUrl() throws IOException{
         NoDriver d = new NoDriver(NoDriverOptions.builder().build());
@@ -163,6 +385,22 @@ class ApplicationTest {
         driver.exit();
     }
 
+    @Test
+    void testPool() throws InterruptedException{
+        try (NoDriverPool pool = NoDriverPool.builder().setSize(2).setMaxUsesPerBrowser(1).build()) {
+            NoDriver first = pool.acquire();
+            NoDriver second = pool.acquire();
+            assertTrue(first.getDebuggingPort() != second.getDebuggingPort());
+            assertTrue(first.getTitle().isPresent());
+            pool.release(first);
+            pool.release(second);
+            // оба браузера отработали лимит и перезапускаются
+            assertTrue(pool.acquire(Duration.ofSeconds(60)).isPresent());
+            var metrics = pool.getMetrics();
+            System.out.println(metrics);
+            assertTrue(metrics.recycled() == 2);
+        }
+    }
 
     @Test
     void exampleUsage() {
@@ -0,0 +1,87 @@
+package com.vityazev_egor.Benchmarks;
+
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.vityazev_egor.Core.CDPMessage;
+
+/**
+ * Compares the old inbound path (readTree for the id, then readTree + findValue for the result)
+ * with the streaming {@link CDPMessage} front end on {@code Runtime.evaluate} responses of different sizes.
+ * <p>
+ * Run {@link #main(String[])} from the IDE, or {@code org.openjdk.jmh.Main CDPMessageParseBenchmark}
+ * on the test classpath after {@code mvn test-compile}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CDPMessageParseBenchmark {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * Size of the evaluated string in characters: a title, a medium page and a multi-megabyte outerHTML.
+     */
+    @Param({"64", "65536", "4194304"})
+    public int valueSize;
+
+    private String response;
+
+    @Setup
+    public void setUp() throws Exception {
+        StringBuilder html = new StringBuilder(valueSize);
+        Random random = new Random(42);
+        while (html.length() < valueSize) {
+            html.append("<div class=\"c").append(random.nextInt(1000)).append("\">text</div>");
+        }
+        html.setLength(valueSize);
+
+        ObjectNode root = objectMapper.createObjectNode();
+        root.put("id", 12345);
+        ObjectNode result = root.putObject("result").putObject("result");
+        result.put("type", "string");
+        result.put("value", html.toString());
+        response = objectMapper.writeValueAsString(root);
+    }
+
+    @Benchmark
+    public Optional<String> treeParse() throws Exception {
+        // как было: отдельный readTree для id в onMessage и ещё один в getJsResult
+        JsonNode command = objectMapper.readTree(response);
+        Integer.parseInt(command.get("id").asText());
+        JsonNode value = objectMapper.readTree(response).findValue("value");
+        return value != null ? Optional.of(value.asText()) : Optional.empty();
+    }
+
+    @Benchmark
+    public Optional<String> streamingParse() {
+        return CDPMessage.parse(response).flatMap(CDPMessage::getJsResult);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(CDPMessageParseBenchmark.class.getSimpleName())
+            .build()).run();
+    }
+}
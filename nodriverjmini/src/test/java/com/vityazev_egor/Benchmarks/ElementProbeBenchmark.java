@@ -0,0 +1,97 @@
+package com.vityazev_egor.Benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.vityazev_egor.NoDriver;
+import com.vityazev_egor.NoDriverOptions;
+import com.vityazev_egor.Core.Shared;
+import com.vityazev_egor.Core.WebElements.By;
+
+/**
+ * Latency of repeated element probes ({@code getPosition.js} and {@code isElementClickable.js}) on a page with 20k nodes:
+ * {@code Runtime.evaluate} of the full text every time and a call of the injected helpers with the locator as
+ * arguments ({@link com.vityazev_egor.Core.HelperRuntime}). Needs Chrome installed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ElementProbeBenchmark {
+    private static final String ELEMENT = "document.querySelector('#target')";
+    private static final List<String> HELPER_LOCATOR = By.cssSelector("#target").getHelperLocator().get();
+
+    private NoDriver driver;
+    private String positionProbe;
+    private String clickableProbe;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        driver = new NoDriver(NoDriverOptions.builder()
+            .setHeadless(true)
+            .setDebuggingPort(0)
+            .setUserDataDir(Files.createTempDirectory("nodriver-probes-").toString())
+            .build());
+        driver.executeJSAndGetResult("""
+            (() => {
+                const html = [];
+                for (let i = 0; i < 20000; i++) html.push('<div class="row"><span>row ' + i + '</span></div>');
+                document.body.innerHTML = html.join('') + '<button id="target">target</button>';
+                return document.getElementsByTagName('*').length;
+            })()""");
+        positionProbe = Shared.readResource("elementsJS/getPosition.js").get().replace("REPLACE_ME", ELEMENT);
+        clickableProbe = Shared.readResource("elementsJS/isElementClickable.js").get().replace("REPLACE_ME", ELEMENT);
+    }
+
+    @Benchmark
+    public Optional<String> positionEvaluate() {
+        return driver.executeJSAndGetResult(positionProbe);
+    }
+
+    @Benchmark
+    public Optional<String> positionHelper() {
+        return driver.getHelpers().call("pos", HELPER_LOCATOR, positionProbe, 2).join();
+    }
+
+    @Benchmark
+    public Optional<String> clickableEvaluate() {
+        return driver.executeJSAndGetResult(clickableProbe);
+    }
+
+    @Benchmark
+    public Optional<String> clickableHelper() {
+        return driver.getHelpers().call("clickable", HELPER_LOCATOR, clickableProbe, 2).join();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        driver.exit();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(ElementProbeBenchmark.class.getSimpleName())
+            .build()).run();
+    }
+}
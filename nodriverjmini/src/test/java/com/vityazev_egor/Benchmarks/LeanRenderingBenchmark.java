@@ -0,0 +1,153 @@
+package com.vityazev_egor.Benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.vityazev_egor.NoDriver;
+import com.vityazev_egor.NoDriverOptions;
+import com.vityazev_egor.Protocol.Page;
+
+/**
+ * Page load time per {@link NoDriverOptions.Preset} on a local page with 200 uncacheable images and a few scripts,
+ * so the network doesn't add noise. After the trial the resident memory of the whole Chrome process tree is printed
+ * ({@code /proc}, Linux only). Needs Chrome installed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class LeanRenderingBenchmark {
+    private static final int IMAGES = 200;
+
+    @Param({"DEFAULT", "LEAN"})
+    public NoDriverOptions.Preset preset;
+
+    private HttpServer server;
+    private NoDriver driver;
+    private String pageUrl;
+    private int loads = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        byte[] image = randomPng();
+        byte[] page = page().getBytes(StandardCharsets.UTF_8);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> respond(exchange, "text/html", page));
+        server.createContext("/img/", exchange -> respond(exchange, "image/png", image));
+        server.start();
+        pageUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+
+        Path profile = Files.createTempDirectory("nodriver-lean-");
+        driver = new NoDriver(NoDriverOptions.builder()
+            .setHeadless(true)
+            .setDebuggingPort(0)
+            .setUserDataDir(profile.toString())
+            .setPreset(preset)
+            .build());
+        driver.getSocketClient().sendCommand(Page.enable());
+    }
+
+    @Benchmark
+    public Page.LoadEventFired pageLoad() {
+        var loaded = driver.getSocketClient().getEventBus().next(Page.LoadEventFired.EVENT);
+        driver.getSocketClient().sendAsync(Page.navigate(pageUrl + "?load=" + loads++));
+        return loaded.orTimeout(30, TimeUnit.SECONDS).join();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.printf("%n%s: Chrome process tree RSS = %d MB%n", preset, rssKb(driver.getChrome().toHandle()) / 1024);
+        driver.exit();
+        server.stop(0);
+    }
+
+    private static String page() {
+        StringBuilder html = new StringBuilder("<html><body>");
+        for (int i = 0; i < IMAGES; i++) {
+            html.append("<img width=64 height=64 src='/img/").append(i).append(".png'>");
+        }
+        // немного работы для таймеров и раскладки
+        html.append("<script>setInterval(() => document.title = Date.now(), 16)</script>");
+        return html.append("</body></html>").toString();
+    }
+
+    private static byte[] randomPng() throws IOException {
+        BufferedImage image = new BufferedImage(128, 128, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        for (int x = 0; x < image.getWidth(); x++) {
+            for (int y = 0; y < image.getHeight(); y++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", png);
+        return png.toByteArray();
+    }
+
+    private static void respond(HttpExchange exchange, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.getResponseHeaders().set("Cache-Control", "no-store");
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+        exchange.close();
+    }
+
+    private static long rssKb(ProcessHandle root) {
+        long total = rssOf(root.pid());
+        for (ProcessHandle child : root.descendants().toList()) {
+            total += rssOf(child.pid());
+        }
+        return total;
+    }
+
+    private static long rssOf(long pid) {
+        try {
+            List<String> status = Files.readAllLines(Path.of("/proc", Long.toString(pid), "status"));
+            return status.stream()
+                .filter(line -> line.startsWith("VmRSS:"))
+                .map(line -> Long.parseLong(line.replaceAll("\\D", "")))
+                .findFirst()
+                .orElse(0L);
+        } catch (IOException | NumberFormatException ex) {
+            // процесс уже завершился или это не Linux
+            return 0;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(LeanRenderingBenchmark.class.getSimpleName())
+            .build()).run();
+    }
+}
@@ -0,0 +1,81 @@
+package com.vityazev_egor.Benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.vityazev_egor.NoDriver;
+import com.vityazev_egor.NoDriverOptions;
+
+/**
+ * Time from {@code new NoDriver(...)} to the answer of the first command, i.e. Chrome launch,
+ * DevTools endpoint discovery and the connection to the page. Needs Chrome installed.
+ * <p>
+ * Every invocation launches a headless browser on a port picked by Chrome with a profile that is warm
+ * after the first launch, so the numbers show the cost of the driver rather than of creating a profile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+@Fork(1)
+public class StartupBenchmark {
+    @Param({"TYRUS", "PIPE"})
+    public NoDriverOptions.Transport transport;
+
+    private Path profile;
+    private NoDriver driver;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        profile = Files.createTempDirectory("nodriver-startup-");
+    }
+
+    @Benchmark
+    public Optional<String> timeToFirstCommand() throws IOException {
+        driver = new NoDriver(NoDriverOptions.builder()
+            .setHeadless(true)
+            .setDebuggingPort(0)
+            .setUserDataDir(profile.toString())
+            .setTransport(transport)
+            .build());
+        return driver.executeJSAndGetResult("1");
+    }
+
+    @TearDown(Level.Invocation)
+    public void stopBrowser() throws InterruptedException {
+        if (driver == null) return;
+        driver.exit();
+        Process chrome = driver.getChrome();
+        chrome.descendants().forEach(ProcessHandle::destroy);
+        chrome.destroy();
+        chrome.waitFor(5, TimeUnit.SECONDS);
+        driver = null;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(StartupBenchmark.class.getSimpleName())
+            .build()).run();
+    }
+}
@@ -0,0 +1,108 @@
+package com.vityazev_egor.Benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.vityazev_egor.NoDriver;
+import com.vityazev_egor.NoDriverOptions;
+import com.vityazev_egor.Core.WebElements.By;
+import com.vityazev_egor.Protocol.Runtime;
+
+/**
+ * Lookup of an element by text on synthetic pages of 10k and 100k elements: the old script filtering every element
+ * and then every pair of matches, the single-pass text index run from scratch ({@code By.text(...).getJavaScript()})
+ * and the index cached by the injected helpers until the page mutates. Needs Chrome installed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class TextSelectorBenchmark {
+    private static final String TARGET = "needle text";
+    // By.text до перехода на индекс текста
+    private static final String LEGACY_JS = String.format(
+        "(function(){var target='%s';var elements=Array.from(document.querySelectorAll('body *'));"
+            + "var matches=elements.filter(function(el){var t=el.textContent;if(t==null){return false;}t=t.trim();"
+            + "return t===target;});"
+            + "var result=matches.filter(function(el){return !matches.some(function(other){return other!==el && el.contains(other);});});"
+            + "return result[0];})()",
+        TARGET);
+
+    @Param({"10000", "100000"})
+    public int nodes;
+
+    private NoDriver driver;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        driver = new NoDriver(NoDriverOptions.builder()
+            .setHeadless(true)
+            .setDebuggingPort(0)
+            .setUserDataDir(Files.createTempDirectory("nodriver-text-").toString())
+            .build());
+        // строка из 5 элементов с вложенностью, искомый текст в самом конце
+        evaluate(String.format("""
+            (() => {
+                const html = [];
+                for (let i = 0; i < %d / 5; i++) {
+                    html.push('<section><div><p><span>row ' + i + '</span> <b>text ' + i + '</b></p></div></section>');
+                }
+                document.body.innerHTML = html.join('') + '<div><p><span>%s</span></p></div>';
+                return true;
+            })()""", nodes, TARGET));
+    }
+
+    @Benchmark
+    public boolean legacyScan() {
+        return evaluate("!!" + LEGACY_JS);
+    }
+
+    @Benchmark
+    public boolean singlePass() {
+        return evaluate("!!" + By.text(TARGET).getJavaScript());
+    }
+
+    @Benchmark
+    public List<Optional<String>> cachedIndex() {
+        // все совпадения по вхождению, без кеша найденного элемента
+        return driver.readProperty(By.textContains(TARGET), "tagName");
+    }
+
+    private boolean evaluate(String js) {
+        var result = driver.getSocketClient().sendAsync(Runtime.evaluate(js).returnByValue(true), 120).join();
+        return result.result() != null && result.result().value() != null && result.result().value().asBoolean();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        driver.exit();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(TextSelectorBenchmark.class.getSimpleName())
+            .build()).run();
+    }
+}
@@ -0,0 +1,130 @@
+package com.vityazev_egor.Build;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ProtocolGeneratorTest {
+    private static final String PACKAGE = "com.example.protocol";
+    private static final String SCHEMA = """
+        {
+          "version": {"major": "1", "minor": "3"},
+          "domains": [{
+            "domain": "Demo",
+            "description": "Demo domain.",
+            "types": [
+              {"id": "ItemId", "type": "string"},
+              {"id": "Item", "type": "object", "properties": [
+                {"name": "id", "$ref": "ItemId"},
+                {"name": "tags", "type": "array", "items": {"type": "string"}},
+                {"name": "size", "type": "integer", "optional": true, "deprecated": true, "description": "Use bytes."}
+              ]}
+            ],
+            "commands": [
+              {"name": "enable"},
+              {"name": "getItem", "parameters": [
+                {"name": "itemId", "$ref": "ItemId"},
+                {"name": "depth", "type": "integer", "optional": true}
+              ], "returns": [
+                {"name": "item", "$ref": "Item"}
+              ]},
+              {"name": "new", "parameters": [{"name": "default", "type": "boolean"}]}
+            ],
+            "events": [
+              {"name": "itemAdded", "parameters": [{"name": "item", "$ref": "Item"}]}
+            ]
+          }]
+        }
+        """;
+
+    @TempDir
+    Path dir;
+
+    private Path schemaDir;
+    private Path outputDir;
+
+    @BeforeEach
+    void writeSchema() throws IOException {
+        schemaDir = Files.createDirectories(dir.resolve("protocol"));
+        outputDir = dir.resolve("generated");
+        Files.writeString(schemaDir.resolve("demo_protocol.json"), SCHEMA);
+    }
+
+    // генератор запускается так же, как в pom.xml: отдельной программой из исходника
+    private String runGenerator() throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(
+            Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+            "-classpath", System.getProperty("java.class.path"),
+            Path.of("src/build/java/com/vityazev_egor/Build/ProtocolGenerator.java").toAbsolutePath().toString(),
+            schemaDir.toString(), outputDir.toString(), PACKAGE
+        ).redirectErrorStream(true).start();
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertTrue(process.waitFor() == 0, output);
+        return output;
+    }
+
+    private Path domainFile(String domain) {
+        return outputDir.resolve(PACKAGE.replace('.', '/')).resolve(domain + ".java");
+    }
+
+    @Test
+    void testDomainSource() throws IOException, InterruptedException {
+        assertTrue(runGenerator().contains("CDP protocol 1.3: 1 domains, 1 files changed"));
+        String source = Files.readString(domainFile("Demo"));
+
+        assertTrue(source.startsWith("// Generated by ProtocolGenerator from demo_protocol.json (protocol 1.3). Do not edit."));
+        assertTrue(source.contains("package " + PACKAGE + ";"));
+        assertTrue(source.contains("public final class Demo {"));
+        // алиас примитива встраивается как String
+        assertTrue(source.contains("public record Item(String id, List<String> tags, Integer size) {"));
+        assertFalse(source.contains("record ItemId"));
+        assertTrue(source.contains("@Deprecated\n        public Integer size() {"));
+
+        assertTrue(source.contains("public static GetItemCommand getItem(String itemId) {"));
+        assertTrue(source.contains("public GetItemCommand depth(Integer depth) {"));
+        assertTrue(source.contains("public static final class GetItemCommand implements CDPCommand<GetItemResult> {"));
+        assertTrue(source.contains("return \"Demo.getItem\";"));
+        assertTrue(source.contains("public record GetItemResult(Item item) {"));
+        assertTrue(source.contains("public static final class EnableCommand implements CDPCommand<Void> {"));
+        // ключевые слова Java получают суффикс
+        assertTrue(source.contains("public static NewCommand newCommand(Boolean defaultValue) {"));
+
+        assertTrue(source.contains("public record ItemAdded(Item item) {"));
+        assertTrue(source.contains("new CDPEventType<>(\"Demo.itemAdded\", ItemAdded::read);"));
+    }
+
+    @Test
+    void testGeneratedSourceCompiles() throws IOException, InterruptedException {
+        runGenerator();
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        int status = compiler.run(null, null, errors,
+            "-proc:none",
+            "-classpath", System.getProperty("java.class.path"),
+            "-d", dir.resolve("classes").toString(),
+            domainFile("Demo").toString());
+        assertTrue(status == 0, errors.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testUnchangedFilesAreKept() throws IOException, InterruptedException {
+        runGenerator();
+        Path stale = domainFile("Removed");
+        Files.writeString(stale, "// domain that is no longer in the schema");
+        assertTrue(runGenerator().contains("1 domains, 1 files changed"));
+        assertFalse(Files.exists(stale));
+        assertTrue(runGenerator().contains("1 domains, 0 files changed"));
+    }
+}
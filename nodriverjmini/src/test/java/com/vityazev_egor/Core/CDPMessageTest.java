@@ -0,0 +1,92 @@
+package com.vityazev_egor.Core;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringWriter;
+
+import org.junit.jupiter.api.Test;
+
+class CDPMessageTest {
+    private static final String RESPONSE =
+        "{\"id\":7,\"result\":{\"result\":{\"type\":\"string\",\"value\":\"done\"},\"nested\":{\"id\":99,\"method\":\"fake\"}},\"sessionId\":\"S1\"}";
+    private static final String EVENT =
+        "{\"method\":\"Page.loadEventFired\",\"params\":{\"timestamp\":12.5,\"frame\":{\"id\":\"F\",\"sessionId\":\"inner\"}},\"sessionId\":\"S2\"}";
+
+    @Test
+    void testHeaderOfResponse() {
+        CDPMessage message = CDPMessage.parse(RESPONSE).orElseThrow();
+        assertTrue(message.getId().orElse(-1) == 7);
+        // поля вложенных объектов не путаются с заголовком
+        assertTrue(message.getMethod().isEmpty());
+        assertTrue(message.getSessionId().orElse("").equals("S1"));
+        assertFalse(message.isEvent());
+    }
+
+    @Test
+    void testHeaderOfEvent() {
+        CDPMessage message = CDPMessage.parse(EVENT).orElseThrow();
+        assertTrue(message.getId().isEmpty());
+        assertTrue(message.getMethod().orElse("").equals("Page.loadEventFired"));
+        assertTrue(message.getSessionId().orElse("").equals("S2"));
+        assertTrue(message.isEvent());
+    }
+
+    @Test
+    void testNotAnObject() {
+        assertTrue(CDPMessage.parse("[1,2]").isEmpty());
+        assertTrue(CDPMessage.parse("not json").isEmpty());
+        assertTrue(CDPMessage.parseId("\"text\"").isEmpty());
+    }
+
+    @Test
+    void testParseId() {
+        assertTrue(CDPMessage.parseId("{\"id\":42,\"method\":\"Runtime.evaluate\"}").orElse(-1) == 42);
+        assertTrue(CDPMessage.parseId("{\"params\":{\"id\":5},\"id\":6}").orElse(-1) == 6);
+        assertTrue(CDPMessage.parseId("{\"id\":\"7\"}").isEmpty());
+        assertTrue(CDPMessage.parseId(EVENT).isEmpty());
+    }
+
+    @Test
+    void testExtract() {
+        CDPMessage message = CDPMessage.parse(RESPONSE).orElseThrow();
+        assertTrue(message.extract("result", "result", "value").orElse("").equals("done"));
+        assertTrue(message.getJsResult().orElse("").equals("done"));
+        assertTrue(message.extract("result", "nested", "id").orElse("").equals("99"));
+        assertTrue(CDPMessage.parse(EVENT).orElseThrow().extract("params", "timestamp").orElse("").equals("12.5"));
+    }
+
+    @Test
+    void testExtractMissingOrNotScalar() {
+        CDPMessage message = CDPMessage.parse(RESPONSE).orElseThrow();
+        assertTrue(message.extract("result", "result").isEmpty());
+        assertTrue(message.extract("result", "missing", "value").isEmpty());
+        // путь проходит через скаляр
+        assertTrue(message.extract("id", "value").isEmpty());
+        assertTrue(CDPMessage.extractFrom("{\"a\":{\"b\":null}}", "a", "b").isEmpty());
+        assertTrue(CDPMessage.extractFrom("{\"a\":{\"b\":[1]}}", "a", "b").isEmpty());
+    }
+
+    @Test
+    void testHasPath() {
+        assertTrue(CDPMessage.hasPath(RESPONSE, "result", "result"));
+        assertTrue(CDPMessage.hasPath("{\"a\":{\"b\":null}}", "a", "b"));
+        assertFalse(CDPMessage.hasPath(RESPONSE, "error"));
+    }
+
+    @Test
+    void testWriteValueTo() throws Exception {
+        CDPMessage message = CDPMessage.parse(RESPONSE).orElseThrow();
+        StringWriter writer = new StringWriter();
+        assertTrue(message.writeValueTo(writer, "result", "result", "value"));
+        assertTrue(writer.toString().equals("done"));
+        assertFalse(message.writeValueTo(new StringWriter(), "id"));
+    }
+
+    @Test
+    void testTreeIsBuiltLazily() {
+        CDPMessage message = CDPMessage.parse(RESPONSE).orElseThrow();
+        assertTrue(message.getTree().path("result").path("nested").path("method").asText().equals("fake"));
+        assertTrue(message.getTree() == message.getTree());
+    }
+}
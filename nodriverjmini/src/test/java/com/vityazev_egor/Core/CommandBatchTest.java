@@ -0,0 +1,98 @@
+package com.vityazev_egor.Core;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+
+class CommandBatchTest {
+
+    private static String methodOf(Optional<String> response) {
+        return response.flatMap(raw -> CDPMessage.extractFrom(raw, "result", "method")).orElse("");
+    }
+
+    @Test
+    void testResultsKeepOrder() throws IOException {
+        FakeTransport transport = FakeTransport.echo();
+        WebSocketClient client = new WebSocketClient(transport);
+        List<Optional<String>> results = client.batch()
+            .add(CDPCommandBuilder.create("First.command"))
+            .add(CDPCommandBuilder.create("Second.command").build())
+            .add(CDPCommandBuilder.create("Third.command"))
+            .execute();
+        assertTrue(results.size() == 3);
+        assertTrue(methodOf(results.get(0)).equals("First.command"));
+        assertTrue(methodOf(results.get(1)).equals("Second.command"));
+        assertTrue(methodOf(results.get(2)).equals("Third.command"));
+        assertTrue(transport.sent.size() == 3);
+        client.closeSession();
+    }
+
+    @Test
+    void testTimedOutCommandIsEmpty() throws IOException {
+        // на Silent.command ответа нет
+        FakeTransport transport = new FakeTransport(message -> message.contains("Silent.command") ? null : FakeTransport.reply(message));
+        WebSocketClient client = new WebSocketClient(transport);
+        List<Optional<String>> results = client.batch()
+            .add(CDPCommandBuilder.create("First.command"))
+            .add(CDPCommandBuilder.create("Silent.command"))
+            .add(CDPCommandBuilder.create("Third.command"))
+            .timeOutSeconds(1)
+            .execute();
+        assertTrue(methodOf(results.get(0)).equals("First.command"));
+        assertTrue(results.get(1).isEmpty());
+        assertTrue(methodOf(results.get(2)).equals("Third.command"));
+        client.closeSession();
+    }
+
+    @Test
+    void testFailedSendIsEmpty() throws IOException {
+        FakeTransport transport = new FakeTransport(FakeTransport::reply) {
+            @Override
+            public CompletableFuture<Void> send(String message) {
+                if (message.contains("Broken.command")) {
+                    return CompletableFuture.failedFuture(new IOException("Broken pipe"));
+                }
+                return super.send(message);
+            }
+        };
+        WebSocketClient client = new WebSocketClient(transport);
+        List<Optional<String>> results = client.batch()
+            .add(CDPCommandBuilder.create("Broken.command"))
+            .add(CDPCommandBuilder.create("Second.command"))
+            .execute();
+        assertTrue(results.get(0).isEmpty());
+        assertTrue(methodOf(results.get(1)).equals("Second.command"));
+        client.closeSession();
+    }
+
+    @Test
+    void testInvalidLegacyCommandIsEmpty() throws IOException {
+        WebSocketClient client = new WebSocketClient(FakeTransport.echo());
+        List<Optional<String>> results = client.batch()
+            .add("{\"method\":\"No.id\"}")
+            .add(CDPCommandBuilder.create("Second.command"))
+            .execute();
+        assertTrue(results.get(0).isEmpty());
+        assertTrue(methodOf(results.get(1)).equals("Second.command"));
+        client.closeSession();
+    }
+
+    @Test
+    void testClosedConnectionFailsEveryCommand() throws IOException {
+        FakeTransport transport = new FakeTransport(message -> null);
+        WebSocketClient client = new WebSocketClient(transport);
+        CompletableFuture<List<Optional<String>>> results = client.batch()
+            .add(CDPCommandBuilder.create("First.command"))
+            .add(CDPCommandBuilder.create("Second.command"))
+            .timeOutSeconds(30)
+            .executeAsync();
+        // закрытие соединения освобождает ожидающих не дожидаясь таймаута
+        transport.close();
+        assertTrue(results.join().stream().allMatch(Optional::isEmpty));
+    }
+}
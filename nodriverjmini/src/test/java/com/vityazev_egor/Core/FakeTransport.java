@@ -0,0 +1,69 @@
+package com.vityazev_egor.Core;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+import com.vityazev_egor.Core.Transport.CDPTransport;
+
+/**
+ * Transport without Chrome: remembers the sent messages and answers each one with the reply of the responder.
+ */
+class FakeTransport implements CDPTransport {
+    final List<String> sent = new CopyOnWriteArrayList<>();
+    private final Function<String, String> responder;
+    private volatile Listener listener;
+    private volatile boolean open = false;
+
+    /**
+     * @param responder Reply to a sent message, {@code null} to leave it unanswered
+     */
+    FakeTransport(Function<String, String> responder) {
+        this.responder = responder;
+    }
+
+    /**
+     * Answers every command with its id and a result holding the method of the command.
+     */
+    static FakeTransport echo() {
+        return new FakeTransport(FakeTransport::reply);
+    }
+
+    static String reply(String message) {
+        return "{\"id\":" + CDPMessage.parseId(message).orElseThrow()
+            + ",\"result\":{\"method\":\"" + CDPMessage.extractFrom(message, "method").orElse("") + "\"}}";
+    }
+
+    void receive(CharSequence part, boolean last) {
+        listener.onMessagePart(part, last);
+    }
+
+    @Override
+    public void connect(Listener listener) {
+        this.listener = listener;
+        open = true;
+    }
+
+    @Override
+    public CompletableFuture<Void> send(String message) {
+        sent.add(message);
+        String reply = responder.apply(message);
+        if (reply != null) {
+            receive(reply, true);
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() {
+        if (!open) return;
+        open = false;
+        listener.onClose("closed by test");
+    }
+}
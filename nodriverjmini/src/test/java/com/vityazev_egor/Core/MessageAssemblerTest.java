@@ -0,0 +1,117 @@
+package com.vityazev_egor.Core;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+class MessageAssemblerTest {
+    private static final String MESSAGE = "{\"id\":3,\"result\":{\"result\":{\"type\":\"string\",\"value\":\"0123456789abcdef\"}}}";
+
+    private static Set<Path> spoolFiles() throws IOException {
+        try (Stream<Path> files = Files.list(Path.of(System.getProperty("java.io.tmpdir")))) {
+            return files.filter(file -> file.getFileName().toString().startsWith("nodriver-cdp-")).collect(Collectors.toSet());
+        }
+    }
+
+    // отдаём сообщение кусками по size символов
+    private static Optional<CDPMessage> appendInParts(MessageAssembler assembler, String message, int size) throws IOException {
+        Optional<CDPMessage> result = Optional.empty();
+        for (int start = 0; start < message.length(); start += size) {
+            int end = Math.min(start + size, message.length());
+            result = assembler.append(message.subSequence(start, end), end == message.length());
+            assertTrue(result.isPresent() == (end == message.length()));
+        }
+        return result;
+    }
+
+    @Test
+    void testSmallMessageStaysInMemory() throws IOException {
+        MessageAssembler assembler = new MessageAssembler(MESSAGE.length());
+        CDPMessage single = assembler.append(MESSAGE, true).orElseThrow();
+        assertTrue(single.getSpoolFile().isEmpty());
+
+        CDPMessage parts = appendInParts(assembler, MESSAGE, 7).orElseThrow();
+        assertTrue(parts.getSpoolFile().isEmpty());
+        assertTrue(parts.getId().orElse(-1) == 3);
+        assertTrue(parts.getRaw().equals(MESSAGE));
+    }
+
+    @Test
+    void testLargeMessageIsSpooled() throws IOException {
+        MessageAssembler assembler = new MessageAssembler(16);
+        CDPMessage message = appendInParts(assembler, MESSAGE, 10).orElseThrow();
+        Path file = message.getSpoolFile().orElseThrow();
+        assertTrue(Files.readString(file).equals(MESSAGE));
+        assertTrue(message.getId().orElse(-1) == 3);
+        assertTrue(message.getJsResult().orElse("").equals("0123456789abcdef"));
+
+        // следующее маленькое сообщение снова собирается в памяти
+        assertTrue(assembler.append("{\"id\":4}", true).orElseThrow().getSpoolFile().isEmpty());
+    }
+
+    @Test
+    void testInvalidSpooledMessageIsDeleted() throws IOException {
+        Set<Path> before = spoolFiles();
+        MessageAssembler assembler = new MessageAssembler(4);
+        assembler.append("[\"not a ", false);
+        assertTrue(assembler.append("frame\"]", true).isEmpty());
+        assertTrue(spoolFiles().equals(before));
+    }
+
+    @Test
+    void testResetDeletesPartialSpool() throws IOException {
+        Set<Path> before = spoolFiles();
+        MessageAssembler assembler = new MessageAssembler(16);
+        assembler.append(MESSAGE.substring(0, 20), false);
+        assertFalse(spoolFiles().equals(before));
+
+        assembler.reset();
+        assertTrue(spoolFiles().equals(before));
+        // после сброса новое сообщение собирается с нуля
+        assertTrue(assembler.append(MESSAGE, true).orElseThrow().getId().orElse(-1) == 3);
+    }
+
+    @Test
+    void testSpoolFileIsDeletedWhenMessageIsCollected() throws IOException {
+        Path file = spoolAndForget();
+        var deleted = new LambdaWaitTask(() -> {
+            System.gc();
+            return !Files.exists(file);
+        });
+        assertTrue(deleted.execute(10, 100));
+    }
+
+    private static Path spoolAndForget() throws IOException {
+        CDPMessage message = new MessageAssembler(16).append(MESSAGE, true).orElseThrow();
+        Path file = message.getSpoolFile().orElseThrow();
+        assertTrue(Files.exists(file));
+        return file;
+    }
+
+    @Test
+    void testHugeResponseIsSpooledByClient() throws IOException {
+        String value = "x".repeat(4 * 1024 * 1024 + 1024);
+        String reply = "{\"id\":1,\"result\":{\"result\":{\"type\":\"string\",\"value\":\"" + value + "\"}}}";
+        FakeTransport transport = new FakeTransport(message -> null);
+        WebSocketClient client = new WebSocketClient(transport);
+        var response = client.sendMessageAsync(CDPCommandBuilder.create("Runtime.evaluate"), 5);
+        for (int start = 0; start < reply.length(); start += 64 * 1024) {
+            int end = Math.min(start + 64 * 1024, reply.length());
+            transport.receive(reply.subSequence(start, end), end == reply.length());
+        }
+
+        CDPMessage message = response.join();
+        assertTrue(message.getSpoolFile().isPresent());
+        assertTrue(message.getJsResult().orElse("").length() == value.length());
+        client.closeSession();
+    }
+}
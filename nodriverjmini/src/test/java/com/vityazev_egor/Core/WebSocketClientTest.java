@@ -0,0 +1,78 @@
+package com.vityazev_egor.Core;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+class WebSocketClientTest {
+
+    @Test
+    void testConnectionIdsStartBelowLimit() throws IOException {
+        FakeTransport transport = FakeTransport.echo();
+        WebSocketClient client = new WebSocketClient(transport);
+        for (int i = 0; i < 3; i++) {
+            CDPMessage response = client.sendMessageAsync(CDPCommandBuilder.create("Page.enable"), 5).join();
+            assertTrue(response.getId().orElse(-1) == i + 1);
+        }
+        transport.sent.forEach(message -> assertTrue(CDPMessage.parseId(message).orElseThrow() < CDPCommandBuilder.CONNECTION_ID_LIMIT));
+        client.closeSession();
+    }
+
+    @Test
+    void testLegacyIdsAreAboveLimit() {
+        for (int i = 0; i < 3; i++) {
+            String json = CDPCommandBuilder.create("Page.enable").build();
+            assertTrue(CDPMessage.parseId(json).orElseThrow() >= CDPCommandBuilder.CONNECTION_ID_LIMIT);
+        }
+    }
+
+    @Test
+    void testMixedCommandsGetTheirOwnResponses() throws IOException {
+        WebSocketClient client = new WebSocketClient(FakeTransport.echo());
+        List<CompletableFuture<CDPMessage>> legacy = new ArrayList<>();
+        List<CompletableFuture<CDPMessage>> typed = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            legacy.add(client.sendMessageAsync(CDPCommandBuilder.create("Legacy.command" + i).build(), 5));
+            typed.add(client.sendMessageAsync(CDPCommandBuilder.create("Typed.command" + i), 5));
+        }
+        for (int i = 0; i < 5; i++) {
+            assertTrue(legacy.get(i).join().extract("result", "method").orElse("").equals("Legacy.command" + i));
+            assertTrue(typed.get(i).join().extract("result", "method").orElse("").equals("Typed.command" + i));
+        }
+        client.closeSession();
+    }
+
+    @Test
+    void testConcurrentIdsAreUnique() throws IOException {
+        FakeTransport transport = FakeTransport.echo();
+        WebSocketClient client = new WebSocketClient(transport);
+        IntStream.range(0, 500).parallel()
+            .mapToObj(i -> client.sendMessageAsync(CDPCommandBuilder.create("Runtime.evaluate").addParam("expression", "1"), 5))
+            .toList()
+            .forEach(CompletableFuture::join);
+
+        Set<Integer> ids = new HashSet<>();
+        transport.sent.forEach(message -> assertTrue(ids.add(CDPMessage.parseId(message).orElseThrow())));
+        assertTrue(ids.size() == 500);
+        client.closeSession();
+    }
+
+    @Test
+    void testClosedTransportFailsAtOnce() throws IOException {
+        FakeTransport transport = FakeTransport.echo();
+        WebSocketClient client = new WebSocketClient(transport);
+        transport.close();
+        CompletableFuture<CDPMessage> response = client.sendMessageAsync(CDPCommandBuilder.create("Page.enable"), 30);
+        assertTrue(response.isCompletedExceptionally());
+        assertFalse(client.isAlive());
+    }
+}
@@ -0,0 +1,120 @@
+package com.vityazev_egor;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ProfileManagerTest {
+    @TempDir
+    Path dir;
+
+    private Path golden;
+    private Path clonesDir;
+
+    @BeforeEach
+    void createGoldenProfile() throws IOException {
+        golden = dir.resolve("golden");
+        clonesDir = dir.resolve("clones");
+        Files.createDirectories(golden.resolve("Default"));
+        Files.writeString(golden.resolve("Default/Cookies"), "cookies");
+        Files.createDirectories(golden.resolve("Default/Extensions/abc/1.0"));
+        Files.writeString(golden.resolve("Default/Extensions/abc/1.0/manifest.json"), "{}");
+        Files.writeString(golden.resolve("DevToolsActivePort"), "9222");
+        Files.writeString(golden.resolve("lockfile"), "");
+    }
+
+    private ProfileManager manager() throws IOException {
+        return ProfileManager.builder()
+            .setGoldenProfile(golden.toString())
+            .setClonesDir(clonesDir.toString())
+            .build();
+    }
+
+    // pid процесса, который уже завершился
+    private static long finishedPid() throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(Path.of(System.getProperty("java.home"), "bin", "java").toString(), "-version").start();
+        process.waitFor();
+        return process.pid();
+    }
+
+    @Test
+    void testCloneContents() throws IOException {
+        Path clone = manager().createClone();
+        assertTrue(clone.getParent().equals(clonesDir));
+        assertTrue(Files.readString(clone.resolve("Default/Cookies")).equals("cookies"));
+        assertTrue(Files.readString(clone.resolve("Default/Extensions/abc/1.0/manifest.json")).equals("{}"));
+        // файлы блокировки и порт прошлого запуска не переносятся
+        assertFalse(Files.exists(clone.resolve("DevToolsActivePort")));
+        assertFalse(Files.exists(clone.resolve("lockfile")));
+
+        // изменения клона не попадают в эталон
+        Files.writeString(clone.resolve("Default/Cookies"), "changed");
+        assertTrue(Files.readString(golden.resolve("Default/Cookies")).equals("cookies"));
+    }
+
+    @Test
+    void testWriteOnceDirsAreHardLinked() throws IOException {
+        ProfileManager manager = manager();
+        Path clone = manager.createClone();
+        if (manager.usesReflinks()) {
+            // reflink клонирует весь профиль целиком, жёсткие ссылки не нужны
+            assertFalse(Files.isSameFile(clone.resolve("Default/Cookies"), golden.resolve("Default/Cookies")));
+            return;
+        }
+        assertTrue(Files.isSameFile(clone.resolve("Default/Extensions/abc/1.0/manifest.json"), golden.resolve("Default/Extensions/abc/1.0/manifest.json")));
+        assertFalse(Files.isSameFile(clone.resolve("Default/Cookies"), golden.resolve("Default/Cookies")));
+    }
+
+    @Test
+    void testStaleClonesAreRemoved() throws IOException, InterruptedException {
+        Path stale = clonesDir.resolve("clone-" + finishedPid() + "-1");
+        Path alive = clonesDir.resolve("clone-" + ProcessHandle.current().pid() + "-99");
+        Path other = clonesDir.resolve("notes");
+        Files.createDirectories(stale.resolve("Default"));
+        Files.createDirectories(alive.resolve("Default"));
+        Files.createDirectories(other);
+
+        manager();
+        assertFalse(Files.exists(stale));
+        // владелец жив, клон ещё используется
+        assertTrue(Files.exists(alive));
+        assertTrue(Files.exists(other));
+    }
+
+    @Test
+    void testReleaseNeverDeletesGoldenProfile() throws IOException {
+        ProfileManager manager = manager();
+        Path clone = manager.createClone();
+        manager.release(clone);
+        assertFalse(Files.exists(clone));
+
+        manager.release(golden);
+        manager.release(dir);
+        assertTrue(Files.exists(golden.resolve("Default/Cookies")));
+    }
+
+    @Test
+    void testGoldenProfileInClonesDirIsKept() throws IOException, InterruptedException {
+        // эталон с именем забытого клона лежит в каталоге клонов
+        Path goldenClone = dir.resolve("clone-" + finishedPid() + "-1");
+        Files.move(golden, goldenClone);
+        golden = goldenClone;
+        clonesDir = dir;
+
+        ProfileManager manager = manager();
+        assertTrue(Files.exists(golden.resolve("Default/Cookies")));
+        Path clone = manager.createClone();
+        manager.release(clone);
+        try (Stream<Path> entries = Files.list(dir)) {
+            assertTrue(entries.anyMatch(golden::equals));
+        }
+    }
+}